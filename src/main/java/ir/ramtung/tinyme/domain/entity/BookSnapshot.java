@@ -0,0 +1,7 @@
+package ir.ramtung.tinyme.domain.entity;
+
+import java.util.List;
+
+public record BookSnapshot(long version, int lastTransactionPrice, List<Order> buyOrders, List<Order> sellOrders,
+                           List<Order> inactiveBuyOrders, List<Order> inactiveSellOrders) {
+}
@@ -0,0 +1,9 @@
+package ir.ramtung.tinyme.domain.entity;
+
+import java.util.List;
+
+public record Depth(
+        List<DepthLevel> buyLevels,
+        List<DepthLevel> sellLevels
+) {
+}
@@ -0,0 +1,8 @@
+package ir.ramtung.tinyme.domain.entity;
+
+public record DepthLevel(
+        int price,
+        int quantity,
+        int orderCount
+) {
+}
@@ -36,12 +36,22 @@ public class IcebergOrder extends Order {
 
     @Override
     public Order snapshot() {
-        return new IcebergOrder(orderId, security, side, quantity, price, broker, shareholder, entryTime, peakSize, OrderStatus.SNAPSHOT, minimumExecutionQuantity);
+        return snapshotAt(quantity, price, peakSize);
+    }
+
+    @Override
+    public Order copy() {
+        return new IcebergOrder(orderId, security, side, quantity, price, broker, shareholder, getEntryTime(), peakSize, displayedQuantity, OrderStatus.SNAPSHOT, minimumExecutionQuantity);
     }
 
     @Override
     public Order snapshotWithQuantity(int newQuantity) {
-        return new IcebergOrder(orderId, security, side, newQuantity, price, broker, shareholder, entryTime, peakSize, OrderStatus.SNAPSHOT, minimumExecutionQuantity);
+        return snapshotAt(newQuantity, price, peakSize);
+    }
+
+    @Override
+    public Order snapshotAt(int quantity, int price, int peakSize) {
+        return new IcebergOrder(orderId, security, side, quantity, price, broker, shareholder, getEntryTime(), peakSize, OrderStatus.SNAPSHOT, minimumExecutionQuantity);
     }
 
     @Override
@@ -1,26 +1,25 @@
 package ir.ramtung.tinyme.domain.entity;
 
-import java.util.LinkedList;
+import java.util.Collection;
 
-public class InactiveOrderBook extends OrderBook {
+public class InactiveOrderBook extends PriceLevelOrderBook {
 
     public InactiveOrderBook() {
-        super();
+        super(new TreePriceLevels(true), new TreePriceLevels(false));
     }
 
-    public StopLimitOrder checkFirstInactiveOrder(Side side, int lastTransactionPrice) {
-        var queue = getQueue(side);
-        StopLimitOrder stopLimitOrder = (StopLimitOrder) queue.getFirst();
-        if (stopLimitOrder.mustBeActive(lastTransactionPrice)){
-            return stopLimitOrder;
-        }
-        else{
-            return null;
-        }
+    @Override
+    protected int levelKey(Order order) {
+        return ((StopLimitOrder) order).getStopPrice();
     }
 
-    public void ActivateQualifiedOrders(Side side, int lastTransactionPrice) {
-        var queue = getQueue(side);
-        while (!queue.isEmpty()) {}
+    public void collectTriggeredOrders(Side side, int lastTransactionPrice, Collection<? super StopLimitOrder> triggeredOrders) {
+        forEachLevelBefore(side, lastTransactionPrice, order -> {
+            StopLimitOrder stopLimitOrder = (StopLimitOrder) order;
+            if (!stopLimitOrder.isTriggered()) {
+                stopLimitOrder.markAsTriggered();
+                triggeredOrders.add(stopLimitOrder);
+            }
+        });
     }
 }
@@ -0,0 +1,78 @@
+package ir.ramtung.tinyme.domain.entity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+class LinearDepth {
+    private static final int INITIAL_CAPACITY = 16;
+    private final boolean ascending;
+    private int[] prices = new int[INITIAL_CAPACITY];
+    private int[] quantities = new int[INITIAL_CAPACITY];
+    private int[] orderCounts = new int[INITIAL_CAPACITY];
+    private int size;
+
+    LinearDepth(Side side) {
+        ascending = side == Side.SELL;
+    }
+
+    void change(int price, int quantity, int orderCount) {
+        int index = indexOf(price);
+        if (index < 0) {
+            index = -index - 1;
+            insertAt(index, price);
+        }
+        quantities[index] += quantity;
+        orderCounts[index] += orderCount;
+        if (orderCounts[index] == 0)
+            removeAt(index);
+    }
+
+    List<DepthLevel> top(int count) {
+        List<DepthLevel> depth = new ArrayList<>(Math.max(Math.min(count, size), 0));
+        for (int index = size - 1; index >= 0 && depth.size() < count; index--)
+            depth.add(new DepthLevel(prices[index], quantities[index], orderCounts[index]));
+        return depth;
+    }
+
+    private boolean isBetter(int price, int otherPrice) {
+        return ascending ? price < otherPrice : price > otherPrice;
+    }
+
+    private int indexOf(int price) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (prices[middle] == price)
+                return middle;
+            if (isBetter(price, prices[middle]))
+                low = middle + 1;
+            else
+                high = middle - 1;
+        }
+        return -(low + 1);
+    }
+
+    private void insertAt(int index, int price) {
+        if (size == prices.length) {
+            prices = Arrays.copyOf(prices, size * 2);
+            quantities = Arrays.copyOf(quantities, size * 2);
+            orderCounts = Arrays.copyOf(orderCounts, size * 2);
+        }
+        System.arraycopy(prices, index, prices, index + 1, size - index);
+        System.arraycopy(quantities, index, quantities, index + 1, size - index);
+        System.arraycopy(orderCounts, index, orderCounts, index + 1, size - index);
+        prices[index] = price;
+        quantities[index] = 0;
+        orderCounts[index] = 0;
+        size++;
+    }
+
+    private void removeAt(int index) {
+        System.arraycopy(prices, index + 1, prices, index, size - index - 1);
+        System.arraycopy(quantities, index + 1, quantities, index, size - index - 1);
+        System.arraycopy(orderCounts, index + 1, orderCounts, index, size - index - 1);
+        size--;
+    }
+}
@@ -0,0 +1,18 @@
+package ir.ramtung.tinyme.domain.entity;
+
+public record MatchPlan(
+        MatchingOutcome outcome,
+        int fillCount,
+        int tradedQuantity,
+        long tradedValue,
+        int remainingQuantity,
+        long creditChange
+) {
+    public static MatchPlan withoutFills(MatchingOutcome outcome, int quantity) {
+        return new MatchPlan(outcome, 0, 0, 0, quantity, 0);
+    }
+
+    public double averagePrice() {
+        return tradedQuantity == 0 ? 0 : (double) tradedValue / tradedQuantity;
+    }
+}
@@ -22,6 +22,9 @@ public final class MatchResult {
     public static MatchResult notEnoughInitialTransaction(){
         return new MatchResult(MatchingOutcome.NOT_ENOUGH_INITIAL_TRANSACTION, null, new LinkedList<>());
     }
+    public static MatchResult rejected(MatchingOutcome outcome) {
+        return new MatchResult(outcome, null, new LinkedList<>());
+    }
     public static MatchResult queuedAsInactiveOrder(){
         return new MatchResult(MatchingOutcome.QUEUED_AS_INACTIVE_ORDER, null, new LinkedList<>());
     }
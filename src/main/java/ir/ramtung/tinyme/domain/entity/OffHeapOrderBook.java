@@ -0,0 +1,548 @@
+package ir.ramtung.tinyme.domain.entity;
+
+import ir.ramtung.tinyme.messaging.request.EnterOrderRq;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+import static ir.ramtung.tinyme.domain.entity.OffHeapOrderStore.NONE;
+
+public class OffHeapOrderBook extends OrderBook {
+    public static final int DEFAULT_INITIAL_CAPACITY = 1024;
+    private static final long NO_ENTRY_TIME = Long.MIN_VALUE;
+    private static final int PLAIN = 0;
+    private static final int ICEBERG = 1;
+    private static final int STOP_LIMIT = 2;
+
+    private final OffHeapOrderStore store;
+    private final TreeMap<Integer, Level> buyLevels = new TreeMap<>(Comparator.reverseOrder());
+    private final TreeMap<Integer, Level> sellLevels = new TreeMap<>();
+    private final SlotIndex buySlotByOrderId;
+    private final SlotIndex sellSlotByOrderId;
+    private final ReferenceTable<Security> securities = new ReferenceTable<>();
+    private final ReferenceTable<Broker> brokers = new ReferenceTable<>();
+    private final ReferenceTable<Shareholder> shareholders = new ReferenceTable<>();
+    private final Cursor scratch = new Cursor();
+    private Level[] levelOfSlot;
+
+    public OffHeapOrderBook(int initialCapacity) {
+        super();
+        store = new OffHeapOrderStore(initialCapacity);
+        levelOfSlot = new Level[Math.max(initialCapacity, 16)];
+        buySlotByOrderId = new SlotIndex(store);
+        sellSlotByOrderId = new SlotIndex(store);
+    }
+
+    public OffHeapOrderBook() {
+        this(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    private TreeMap<Integer, Level> getLevels(Side side) {
+        return side == Side.BUY ? buyLevels : sellLevels;
+    }
+
+    private SlotIndex getSlotByOrderId(Side side) {
+        return side == Side.BUY ? buySlotByOrderId : sellSlotByOrderId;
+    }
+
+    private int store(Order order) {
+        order.queue();
+        int slot = store.allocateSlot();
+        store.orderId(slot, order.getOrderId());
+        if (order.getEntryTime() == null)
+            store.entryTime(slot, NO_ENTRY_TIME, 0);
+        else
+            store.entryTime(slot, order.getEntryTime().toEpochSecond(ZoneOffset.UTC), order.getEntryTime().getNano());
+        store.price(slot, order.getPrice());
+        store.minimumExecutionQuantity(slot, order.getMinimumExecutionQuantity());
+        store.securityRef(slot, securities.intern(order.getSecurity()));
+        store.brokerRef(slot, brokers.intern(order.getBroker()));
+        store.shareholderRef(slot, shareholders.intern(order.getShareholder()));
+        store.flags(slot, order.getSide(), !order.isNew());
+        if (order instanceof StopLimitOrder stopLimitOrder) {
+            store.stopPrice(slot, stopLimitOrder.getStopPrice());
+            store.requestId(slot, stopLimitOrder.getRequestId());
+        } else {
+            store.stopPrice(slot, 0);
+            store.requestId(slot, 0);
+        }
+        storeQuantities(slot, order);
+        getSlotByOrderId(order.getSide()).put(slot);
+        added(order);
+        return slot;
+    }
+
+    private void storeQuantities(int slot, Order order) {
+        store.quantity(slot, order.getTotalQuantity());
+        if (order instanceof IcebergOrder icebergOrder) {
+            store.peakSize(slot, icebergOrder.getPeakSize());
+            store.displayedQuantity(slot, icebergOrder.getDisplayedQuantity());
+        } else {
+            store.peakSize(slot, 0);
+            store.displayedQuantity(slot, order.getTotalQuantity());
+        }
+    }
+
+    private Order newView(int slot) {
+        return bind(slot, createView(kindOf(slot)));
+    }
+
+    private int kindOf(int slot) {
+        if (store.peakSize(slot) != 0)
+            return ICEBERG;
+        return store.stopPrice(slot) != 0 ? STOP_LIMIT : PLAIN;
+    }
+
+    private static Order createView(int kind) {
+        return switch (kind) {
+            case ICEBERG -> new IcebergView();
+            case STOP_LIMIT -> new StopLimitView();
+            default -> new OrderView();
+        };
+    }
+
+    private Order bind(int slot, Order view) {
+        view.orderId = store.orderId(slot);
+        view.security = securities.get(store.securityRef(slot));
+        view.side = store.side(slot);
+        view.quantity = store.quantity(slot);
+        view.price = store.price(slot);
+        view.broker = brokers.get(store.brokerRef(slot));
+        view.shareholder = shareholders.get(store.shareholderRef(slot));
+        view.entryTime = null;
+        view.status = OrderStatus.QUEUED;
+        view.minimumExecutionQuantity = store.minimumExecutionQuantity(slot);
+        view.isNew = !store.isUpdated(slot);
+        ((SlotView) view).entryTime(store.entrySeconds(slot), store.entryNanos(slot));
+        if (view instanceof IcebergOrder icebergOrder) {
+            icebergOrder.peakSize = store.peakSize(slot);
+            icebergOrder.displayedQuantity = store.displayedQuantity(slot);
+        } else if (view instanceof StopLimitOrder stopLimitOrder) {
+            stopLimitOrder.StopPrice = store.stopPrice(slot);
+            stopLimitOrder.requestId = store.requestId(slot);
+        }
+        return view;
+    }
+
+    private void linkLast(int slot) {
+        Level level = attach(slot);
+        store.prev(slot, level.tail);
+        store.next(slot, NONE);
+        if (level.tail == NONE)
+            level.head = slot;
+        else
+            store.next(level.tail, slot);
+        level.tail = slot;
+    }
+
+    private void linkFirst(int slot) {
+        Level level = attach(slot);
+        store.prev(slot, NONE);
+        store.next(slot, level.head);
+        if (level.head == NONE)
+            level.tail = slot;
+        else
+            store.prev(level.head, slot);
+        level.head = slot;
+    }
+
+    private Level attach(int slot) {
+        Level level = getLevels(store.side(slot)).computeIfAbsent(store.price(slot), Level::new);
+        if (slot >= levelOfSlot.length)
+            levelOfSlot = Arrays.copyOf(levelOfSlot, Math.max(levelOfSlot.length * 2, slot + 1));
+        levelOfSlot[slot] = level;
+        level.quantity += store.displayedQuantity(slot);
+        level.orderCount++;
+        return level;
+    }
+
+    private void unlink(int slot) {
+        Level level = levelOfSlot[slot];
+        levelOfSlot[slot] = null;
+        level.quantity -= store.displayedQuantity(slot);
+        level.orderCount--;
+        int prev = store.prev(slot);
+        int next = store.next(slot);
+        if (prev == NONE)
+            level.head = next;
+        else
+            store.next(prev, next);
+        if (next == NONE)
+            level.tail = prev;
+        else
+            store.prev(next, prev);
+        if (level.head == NONE)
+            getLevels(store.side(slot)).remove(level.price);
+    }
+
+    private void restoreQuantities(int slot, Order order) {
+        Level level = levelOfSlot[slot];
+        level.quantity -= store.displayedQuantity(slot);
+        storeQuantities(slot, order);
+        level.quantity += store.displayedQuantity(slot);
+    }
+
+    private void discard(int slot) {
+        Order removedOrder = scratch.bind(slot);
+        getSlotByOrderId(store.side(slot)).remove(store.orderId(slot));
+        unlink(slot);
+        store.releaseSlot(slot);
+        removed(removedOrder);
+    }
+
+    @Override
+    public void enqueue(Order order) {
+        linkLast(store(order));
+    }
+
+    @Override
+    public void putBack(Order order) {
+        linkFirst(store(order));
+    }
+
+    @Override
+    public Order findByOrderId(Side side, long orderId) {
+        int slot = getSlotByOrderId(side).get(orderId);
+        return slot == NONE ? null : newView(slot);
+    }
+
+    @Override
+    public boolean removeByOrderId(Side side, long orderId) {
+        int slot = getSlotByOrderId(side).get(orderId);
+        if (slot == NONE)
+            return false;
+        discard(slot);
+        return true;
+    }
+
+    @Override
+    public Iterator<Order> ordersInPriority(Side side) {
+        Iterator<Level> levels = getLevels(side).values().iterator();
+        Cursor cursor = new Cursor();
+        return new Iterator<>() {
+            private int slot = levels.hasNext() ? levels.next().head : NONE;
+
+            @Override
+            public boolean hasNext() {
+                return slot != NONE;
+            }
+
+            @Override
+            public Order next() {
+                if (slot == NONE)
+                    throw new NoSuchElementException();
+                Order order = cursor.bind(slot);
+                slot = store.next(slot);
+                if (slot == NONE && levels.hasNext())
+                    slot = levels.next().head;
+                return order;
+            }
+        };
+    }
+
+    @Override
+    public Order matchWithFirst(Order newOrder) {
+        int slot = getLevels(newOrder.getSide().opposite()).firstEntry().getValue().head;
+        return newOrder.matches(store.price(slot)) ? newView(slot) : null;
+    }
+
+    @Override
+    public boolean hasOrderOfType(Side side) {
+        return !getLevels(side).isEmpty();
+    }
+
+    @Override
+    public void removeFirst(Side side) {
+        discard(getLevels(side).firstEntry().getValue().head);
+    }
+
+    @Override
+    public void replenishFirst(IcebergOrder icebergOrder) {
+        int slot = getLevels(icebergOrder.getSide()).firstEntry().getValue().head;
+        removed(icebergOrder);
+        icebergOrder.decreaseQuantity(icebergOrder.getQuantity());
+        icebergOrder.replenish();
+        added(icebergOrder);
+        restoreQuantities(slot, icebergOrder);
+        unlink(slot);
+        linkLast(slot);
+    }
+
+    @Override
+    public void decreaseQuantity(Order order, int amount) {
+        super.decreaseQuantity(order, amount);
+        int slot = getSlotByOrderId(order.getSide()).get(order.getOrderId());
+        if (slot != NONE)
+            restoreQuantities(slot, order);
+    }
+
+    @Override
+    public void amend(Order order, EnterOrderRq updateOrderRq) {
+        super.amend(order, updateOrderRq);
+        int slot = getSlotByOrderId(order.getSide()).get(order.getOrderId());
+        if (slot == NONE)
+            return;
+        restoreQuantities(slot, order);
+        store.flags(slot, order.getSide(), !order.isNew());
+        if (order instanceof StopLimitOrder stopLimitOrder)
+            store.stopPrice(slot, stopLimitOrder.getStopPrice());
+        if (store.price(slot) != order.getPrice()) {
+            unlink(slot);
+            store.price(slot, order.getPrice());
+            linkLast(slot);
+        }
+    }
+
+    @Override
+    public LinkedList<Order> getBuyQueue() {
+        return materialize(buyLevels);
+    }
+
+    @Override
+    public LinkedList<Order> getSellQueue() {
+        return materialize(sellLevels);
+    }
+
+    private LinkedList<Order> materialize(TreeMap<Integer, Level> levels) {
+        LinkedList<Order> queue = new LinkedList<>();
+        for (Level level : levels.values())
+            for (int slot = level.head; slot != NONE; slot = store.next(slot))
+                queue.add(newView(slot));
+        return queue;
+    }
+
+    @Override
+    protected void depthChanged(Order order, int quantity, int orderCount) {
+    }
+
+    @Override
+    public Depth getDepth(int count) {
+        return new Depth(depthOf(buyLevels, count), depthOf(sellLevels, count));
+    }
+
+    private static List<DepthLevel> depthOf(TreeMap<Integer, Level> levels, int count) {
+        List<DepthLevel> depth = new ArrayList<>(Math.max(count, 0));
+        for (Level level : levels.values()) {
+            if (depth.size() >= count)
+                break;
+            depth.add(new DepthLevel(level.price, level.quantity, level.orderCount));
+        }
+        return depth;
+    }
+
+    @Override
+    public long getOffHeapMemoryUsage() {
+        return store.memoryUsage();
+    }
+
+    @Override
+    public OrderBookType getType() {
+        return OrderBookType.OFF_HEAP;
+    }
+
+    private class Cursor {
+        private final Order[] views = new Order[3];
+
+        Order bind(int slot) {
+            int kind = kindOf(slot);
+            if (views[kind] == null)
+                views[kind] = createView(kind);
+            return OffHeapOrderBook.this.bind(slot, views[kind]);
+        }
+    }
+
+    private interface SlotView {
+        void entryTime(long seconds, int nanos);
+    }
+
+    private static LocalDateTime toEntryTime(long seconds, int nanos) {
+        return seconds == NO_ENTRY_TIME ? null : LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC);
+    }
+
+    private static final class OrderView extends Order implements SlotView {
+        private long entrySeconds;
+        private int entryNanos;
+
+        OrderView() {
+            super(0, null, null, 0, 0, null, null, null, OrderStatus.QUEUED, 0);
+        }
+
+        @Override
+        public void entryTime(long seconds, int nanos) {
+            entrySeconds = seconds;
+            entryNanos = nanos;
+        }
+
+        @Override
+        public LocalDateTime getEntryTime() {
+            if (entryTime == null)
+                entryTime = toEntryTime(entrySeconds, entryNanos);
+            return entryTime;
+        }
+    }
+
+    private static final class IcebergView extends IcebergOrder implements SlotView {
+        private long entrySeconds;
+        private int entryNanos;
+
+        IcebergView() {
+            super(0, null, null, 0, 0, null, null, null, 0, 0, OrderStatus.QUEUED, 0);
+        }
+
+        @Override
+        public void entryTime(long seconds, int nanos) {
+            entrySeconds = seconds;
+            entryNanos = nanos;
+        }
+
+        @Override
+        public LocalDateTime getEntryTime() {
+            if (entryTime == null)
+                entryTime = toEntryTime(entrySeconds, entryNanos);
+            return entryTime;
+        }
+    }
+
+    private static final class StopLimitView extends StopLimitOrder implements SlotView {
+        private long entrySeconds;
+        private int entryNanos;
+
+        StopLimitView() {
+            super(0, null, null, 0, 0, null, null, null, OrderStatus.QUEUED, 0, 0, 0);
+        }
+
+        @Override
+        public void entryTime(long seconds, int nanos) {
+            entrySeconds = seconds;
+            entryNanos = nanos;
+        }
+
+        @Override
+        public LocalDateTime getEntryTime() {
+            if (entryTime == null)
+                entryTime = toEntryTime(entrySeconds, entryNanos);
+            return entryTime;
+        }
+    }
+
+    private static class Level {
+        final int price;
+        int head = NONE;
+        int tail = NONE;
+        int quantity;
+        int orderCount;
+
+        Level(int price) {
+            this.price = price;
+        }
+    }
+
+    private static class ReferenceTable<T> {
+        private final ArrayList<T> references = new ArrayList<>();
+        private final IdentityHashMap<T, Integer> indices = new IdentityHashMap<>();
+
+        int intern(T reference) {
+            Integer index = indices.get(reference);
+            if (index != null)
+                return index;
+            references.add(reference);
+            indices.put(reference, references.size() - 1);
+            return references.size() - 1;
+        }
+
+        T get(int index) {
+            return references.get(index);
+        }
+    }
+
+    private static class SlotIndex {
+        private final OffHeapOrderStore store;
+        private int[] slots;
+        private int mask;
+        private int size;
+
+        SlotIndex(OffHeapOrderStore store) {
+            this.store = store;
+            allocate(64);
+        }
+
+        private void allocate(int capacity) {
+            slots = new int[capacity];
+            Arrays.fill(slots, NONE);
+            mask = capacity - 1;
+        }
+
+        private int home(long orderId) {
+            long hash = orderId * 0x9E3779B97F4A7C15L;
+            return (int) (hash ^ (hash >>> 32)) & mask;
+        }
+
+        private int find(long orderId) {
+            for (int i = home(orderId); slots[i] != NONE; i = (i + 1) & mask) {
+                if (store.orderId(slots[i]) == orderId)
+                    return i;
+            }
+            return NONE;
+        }
+
+        int get(long orderId) {
+            int i = find(orderId);
+            return i == NONE ? NONE : slots[i];
+        }
+
+        void put(int slot) {
+            if (2 * (size + 1) > slots.length)
+                grow();
+            long orderId = store.orderId(slot);
+            int i = home(orderId);
+            while (slots[i] != NONE) {
+                if (store.orderId(slots[i]) == orderId) {
+                    slots[i] = slot;
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            slots[i] = slot;
+            size++;
+        }
+
+        void remove(long orderId) {
+            int hole = find(orderId);
+            if (hole == NONE)
+                return;
+            int next = hole;
+            while (true) {
+                next = (next + 1) & mask;
+                if (slots[next] == NONE)
+                    break;
+                int home = home(store.orderId(slots[next]));
+                boolean reachable = hole <= next ? (home <= hole || home > next) : (home <= hole && home > next);
+                if (reachable) {
+                    slots[hole] = slots[next];
+                    hole = next;
+                }
+            }
+            slots[hole] = NONE;
+            size--;
+        }
+
+        private void grow() {
+            int[] old = slots;
+            allocate(old.length * 2);
+            size = 0;
+            for (int slot : old) {
+                if (slot != NONE)
+                    put(slot);
+            }
+        }
+    }
+}
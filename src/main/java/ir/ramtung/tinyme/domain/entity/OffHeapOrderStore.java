@@ -0,0 +1,143 @@
+package ir.ramtung.tinyme.domain.entity;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+
+class OffHeapOrderStore {
+    static final int NONE = -1;
+    private static final int LONG_COLUMNS = 3;
+    private static final int INT_COLUMNS = 13;
+    static final int BYTES_PER_SLOT = LONG_COLUMNS * Long.BYTES + INT_COLUMNS * Integer.BYTES + 1;
+    private static final byte SELL = 1;
+    private static final byte UPDATED = 2;
+
+    private int capacity;
+    private int used;
+    private int freeSlots = NONE;
+
+    private LongBuffer orderIds;
+    private LongBuffer requestIds;
+    private LongBuffer entrySeconds;
+    private IntBuffer entryNanos;
+    private IntBuffer prices;
+    private IntBuffer quantities;
+    private IntBuffer displayedQuantities;
+    private IntBuffer peakSizes;
+    private IntBuffer stopPrices;
+    private IntBuffer minimumExecutionQuantities;
+    private IntBuffer securityRefs;
+    private IntBuffer brokerRefs;
+    private IntBuffer shareholderRefs;
+    private IntBuffer prevs;
+    private IntBuffer nexts;
+    private ByteBuffer flags;
+
+    OffHeapOrderStore(int initialCapacity) {
+        allocate(Math.max(initialCapacity, 16));
+    }
+
+    private static LongBuffer longColumn(int capacity, LongBuffer old) {
+        LongBuffer column = ByteBuffer.allocateDirect(capacity * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+        if (old != null)
+            column.put(0, old, 0, old.capacity());
+        return column;
+    }
+
+    private static IntBuffer intColumn(int capacity, IntBuffer old) {
+        IntBuffer column = ByteBuffer.allocateDirect(capacity * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer();
+        if (old != null)
+            column.put(0, old, 0, old.capacity());
+        return column;
+    }
+
+    private void allocate(int newCapacity) {
+        orderIds = longColumn(newCapacity, orderIds);
+        requestIds = longColumn(newCapacity, requestIds);
+        entrySeconds = longColumn(newCapacity, entrySeconds);
+        entryNanos = intColumn(newCapacity, entryNanos);
+        prices = intColumn(newCapacity, prices);
+        quantities = intColumn(newCapacity, quantities);
+        displayedQuantities = intColumn(newCapacity, displayedQuantities);
+        peakSizes = intColumn(newCapacity, peakSizes);
+        stopPrices = intColumn(newCapacity, stopPrices);
+        minimumExecutionQuantities = intColumn(newCapacity, minimumExecutionQuantities);
+        securityRefs = intColumn(newCapacity, securityRefs);
+        brokerRefs = intColumn(newCapacity, brokerRefs);
+        shareholderRefs = intColumn(newCapacity, shareholderRefs);
+        prevs = intColumn(newCapacity, prevs);
+        nexts = intColumn(newCapacity, nexts);
+        ByteBuffer newFlags = ByteBuffer.allocateDirect(newCapacity);
+        if (flags != null)
+            newFlags.put(0, flags, 0, flags.capacity());
+        flags = newFlags;
+        capacity = newCapacity;
+    }
+
+    int allocateSlot() {
+        int slot;
+        if (freeSlots != NONE) {
+            slot = freeSlots;
+            freeSlots = nexts.get(slot);
+        } else {
+            if (used == capacity)
+                allocate(capacity * 2);
+            slot = used++;
+        }
+        prevs.put(slot, NONE);
+        nexts.put(slot, NONE);
+        return slot;
+    }
+
+    void releaseSlot(int slot) {
+        nexts.put(slot, freeSlots);
+        freeSlots = slot;
+    }
+
+    long memoryUsage() {
+        return (long) capacity * BYTES_PER_SLOT;
+    }
+
+    long orderId(int slot) { return orderIds.get(slot); }
+    void orderId(int slot, long value) { orderIds.put(slot, value); }
+    long requestId(int slot) { return requestIds.get(slot); }
+    void requestId(int slot, long value) { requestIds.put(slot, value); }
+    long entrySeconds(int slot) { return entrySeconds.get(slot); }
+    int entryNanos(int slot) { return entryNanos.get(slot); }
+    void entryTime(int slot, long seconds, int nanos) { entrySeconds.put(slot, seconds); entryNanos.put(slot, nanos); }
+    int price(int slot) { return prices.get(slot); }
+    void price(int slot, int value) { prices.put(slot, value); }
+    int quantity(int slot) { return quantities.get(slot); }
+    void quantity(int slot, int value) { quantities.put(slot, value); }
+    int displayedQuantity(int slot) { return displayedQuantities.get(slot); }
+    void displayedQuantity(int slot, int value) { displayedQuantities.put(slot, value); }
+    int peakSize(int slot) { return peakSizes.get(slot); }
+    void peakSize(int slot, int value) { peakSizes.put(slot, value); }
+    int stopPrice(int slot) { return stopPrices.get(slot); }
+    void stopPrice(int slot, int value) { stopPrices.put(slot, value); }
+    int minimumExecutionQuantity(int slot) { return minimumExecutionQuantities.get(slot); }
+    void minimumExecutionQuantity(int slot, int value) { minimumExecutionQuantities.put(slot, value); }
+    int securityRef(int slot) { return securityRefs.get(slot); }
+    void securityRef(int slot, int value) { securityRefs.put(slot, value); }
+    int brokerRef(int slot) { return brokerRefs.get(slot); }
+    void brokerRef(int slot, int value) { brokerRefs.put(slot, value); }
+    int shareholderRef(int slot) { return shareholderRefs.get(slot); }
+    void shareholderRef(int slot, int value) { shareholderRefs.put(slot, value); }
+    int prev(int slot) { return prevs.get(slot); }
+    void prev(int slot, int value) { prevs.put(slot, value); }
+    int next(int slot) { return nexts.get(slot); }
+    void next(int slot, int value) { nexts.put(slot, value); }
+
+    Side side(int slot) {
+        return (flags.get(slot) & SELL) != 0 ? Side.SELL : Side.BUY;
+    }
+
+    boolean isUpdated(int slot) {
+        return (flags.get(slot) & UPDATED) != 0;
+    }
+
+    void flags(int slot, Side side, boolean updated) {
+        flags.put(slot, (byte) ((side == Side.SELL ? SELL : 0) | (updated ? UPDATED : 0)));
+    }
+}
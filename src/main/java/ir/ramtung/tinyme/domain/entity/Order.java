@@ -72,18 +72,30 @@ public class Order {
     }
 
     public Order snapshot() {
-        return new Order(orderId, security, side, quantity, price, broker, shareholder, entryTime, OrderStatus.SNAPSHOT, minimumExecutionQuantity);
+        return snapshotAt(quantity, price, 0);
+    }
+
+    public Order copy() {
+        return snapshot();
     }
 
     public Order snapshotWithQuantity(int newQuantity) {
-        return new Order(orderId, security, side, newQuantity, price, broker, shareholder, entryTime, OrderStatus.SNAPSHOT, minimumExecutionQuantity);
+        return snapshotAt(newQuantity, price, 0);
+    }
+
+    public Order snapshotAt(int quantity, int price, int peakSize) {
+        return new Order(orderId, security, side, quantity, price, broker, shareholder, getEntryTime(), OrderStatus.SNAPSHOT, minimumExecutionQuantity);
     }
 
     public boolean matches(Order other) {
+        return matches(other.price);
+    }
+
+    public boolean matches(int otherPrice) {
         if (side == Side.BUY)
-            return price >= other.price;
+            return price >= otherPrice;
         else
-            return price <= other.price;
+            return price <= otherPrice;
     }
 
     public void decreaseQuantity(int amount) {
@@ -1,7 +1,9 @@
 package ir.ramtung.tinyme.domain.entity;
 
+import ir.ramtung.tinyme.messaging.request.EnterOrderRq;
 import lombok.Getter;
 
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
@@ -10,10 +12,19 @@ import java.util.ListIterator;
 public class OrderBook {
     private final LinkedList<Order> buyQueue;
     private final LinkedList<Order> sellQueue;
+    @Getter(lombok.AccessLevel.NONE)
+    private final SellQuantityIndex sellQuantityByShareholder;
+    @Getter(lombok.AccessLevel.NONE)
+    private final LinearDepth buyDepth;
+    @Getter(lombok.AccessLevel.NONE)
+    private final LinearDepth sellDepth;
 
     public OrderBook() {
         buyQueue = new LinkedList<>();
         sellQueue = new LinkedList<>();
+        sellQuantityByShareholder = new SellQuantityIndex();
+        buyDepth = new LinearDepth(Side.BUY);
+        sellDepth = new LinearDepth(Side.SELL);
     }
 
     public void enqueue(Order order) {
@@ -27,6 +38,8 @@ public class OrderBook {
         }
         order.queue();
         it.add(order);
+        added(order);
+        depthChanged(order, order.getQuantity(), 1);
     }
 
     protected LinkedList<Order> getQueue(Side side) {
@@ -46,14 +59,21 @@ public class OrderBook {
         var queue = getQueue(side);
         var it = queue.listIterator();
         while (it.hasNext()) {
-            if (it.next().getOrderId() == orderId) {
+            Order order = it.next();
+            if (order.getOrderId() == orderId) {
                 it.remove();
+                removed(order);
+                depthChanged(order, -order.getQuantity(), -1);
                 return true;
             }
         }
         return false;
     }
 
+    public Iterator<Order> ordersInPriority(Side side) {
+        return getQueue(side).iterator();
+    }
+
     public Order matchWithFirst(Order newOrder) {
         var queue = getQueue(newOrder.getSide().opposite());
         if (newOrder.matches(queue.getFirst()))
@@ -66,11 +86,8 @@ public class OrderBook {
         LinkedList<Order> queue = getQueue(order.getSide());
         order.queue();
         queue.addFirst(order);
-    }
-
-    public void restoreSellOrder(Order sellOrder) {
-        removeByOrderId(Side.SELL, sellOrder.getOrderId());
-        putBack(sellOrder);
+        added(order);
+        depthChanged(order, order.getQuantity(), 1);
     }
 
     public boolean hasOrderOfType(Side side) {
@@ -78,13 +95,67 @@ public class OrderBook {
     }
 
     public void removeFirst(Side side) {
-        getQueue(side).removeFirst();
+        Order order = getQueue(side).removeFirst();
+        removed(order);
+        depthChanged(order, -order.getQuantity(), -1);
+    }
+
+    public void replenishFirst(IcebergOrder icebergOrder) {
+        removeFirst(icebergOrder.getSide());
+        icebergOrder.decreaseQuantity(icebergOrder.getQuantity());
+        icebergOrder.replenish();
+        enqueue(icebergOrder);
+    }
+
+    public void decreaseQuantity(Order order, int amount) {
+        order.decreaseQuantity(amount);
+        changeSellQuantity(order, -amount);
+        depthChanged(order, -amount, 0);
+    }
+
+    public void amend(Order order, EnterOrderRq updateOrderRq) {
+        removed(order);
+        depthChanged(order, -order.getQuantity(), -1);
+        order.updateFromRequest(updateOrderRq);
+        added(order);
+        depthChanged(order, order.getQuantity(), 1);
+    }
+
+    protected void added(Order order) {
+        changeSellQuantity(order, order.getTotalQuantity());
+    }
+
+    protected void removed(Order order) {
+        changeSellQuantity(order, -order.getTotalQuantity());
+    }
+
+    protected void depthChanged(Order order, int quantity, int orderCount) {
+        (order.getSide() == Side.BUY ? buyDepth : sellDepth).change(order.getPrice(), quantity, orderCount);
+    }
+
+    private static long keyOf(Shareholder shareholder) {
+        return shareholder == null ? Long.MIN_VALUE : shareholder.getShareholderId();
+    }
+
+    private void changeSellQuantity(Order order, int amount) {
+        if (order.getSide() != Side.SELL || amount == 0)
+            return;
+        sellQuantityByShareholder.add(keyOf(order.getShareholder()), amount);
     }
 
     public int totalSellQuantityByShareholder(Shareholder shareholder) {
-        return sellQueue.stream()
-                .filter(order -> order.getShareholder().equals(shareholder))
-                .mapToInt(Order::getTotalQuantity)
-                .sum();
+        return sellQuantityByShareholder.get(keyOf(shareholder));
+    }
+
+    public Depth getDepth(int levels) {
+        return new Depth(buyDepth.top(levels), sellDepth.top(levels));
+    }
+
+    public long getOffHeapMemoryUsage() {
+        return 0;
+    }
+
+    public OrderBookType getType() {
+        return OrderBookType.LINEAR;
     }
 }
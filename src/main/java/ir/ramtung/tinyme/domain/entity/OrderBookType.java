@@ -0,0 +1,36 @@
+package ir.ramtung.tinyme.domain.entity;
+
+public enum OrderBookType {
+    LINEAR {
+        @Override
+        public OrderBook newOrderBook(int tickSize) {
+            return new OrderBook();
+        }
+    },
+    PRICE_LEVEL {
+        @Override
+        public OrderBook newOrderBook(int tickSize) {
+            return new PriceLevelOrderBook();
+        }
+    },
+    TICK_LADDER {
+        @Override
+        public OrderBook newOrderBook(int tickSize) {
+            return new TickLadderOrderBook(tickSize);
+        }
+    },
+    OFF_HEAP {
+        @Override
+        public OrderBook newOrderBook(int tickSize) {
+            return new OffHeapOrderBook();
+        }
+    };
+
+    public static OrderBookType parse(String s, OrderBookType defaultType) {
+        if (s == null || s.isBlank())
+            return defaultType;
+        return valueOf(s.trim());
+    }
+
+    public abstract OrderBook newOrderBook(int tickSize);
+}
@@ -0,0 +1,90 @@
+package ir.ramtung.tinyme.domain.entity;
+
+class OrderIndex {
+    private static final int INITIAL_CAPACITY = 64;
+    private long[] keys;
+    private OrderNode[] nodes;
+    private int mask;
+    private int size;
+
+    OrderIndex() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        nodes = new OrderNode[capacity];
+        mask = capacity - 1;
+    }
+
+    private int slotOf(long orderId) {
+        long hash = orderId * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private int find(long orderId) {
+        int slot = slotOf(orderId);
+        while (nodes[slot] != null) {
+            if (keys[slot] == orderId)
+                return slot;
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    OrderNode get(long orderId) {
+        int slot = find(orderId);
+        return slot < 0 ? null : nodes[slot];
+    }
+
+    void put(long orderId, OrderNode node) {
+        if (2 * (size + 1) > nodes.length)
+            grow();
+        int slot = slotOf(orderId);
+        while (nodes[slot] != null) {
+            if (keys[slot] == orderId) {
+                nodes[slot] = node;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = orderId;
+        nodes[slot] = node;
+        size++;
+    }
+
+    OrderNode remove(long orderId) {
+        int slot = find(orderId);
+        if (slot < 0)
+            return null;
+        OrderNode removed = nodes[slot];
+        int hole = slot;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            if (nodes[next] == null)
+                break;
+            int home = slotOf(keys[next]);
+            boolean reachable = hole <= next ? (home <= hole || home > next) : (home <= hole && home > next);
+            if (reachable) {
+                keys[hole] = keys[next];
+                nodes[hole] = nodes[next];
+                hole = next;
+            }
+        }
+        nodes[hole] = null;
+        size--;
+        return removed;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        OrderNode[] oldNodes = nodes;
+        allocate(oldNodes.length * 2);
+        size = 0;
+        for (int i = 0; i < oldNodes.length; i++) {
+            if (oldNodes[i] != null)
+                put(oldKeys[i], oldNodes[i]);
+        }
+    }
+}
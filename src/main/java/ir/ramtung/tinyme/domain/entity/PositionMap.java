@@ -0,0 +1,101 @@
+package ir.ramtung.tinyme.domain.entity;
+
+import java.util.StringJoiner;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class PositionMap {
+    private static final int INITIAL_CAPACITY = 8;
+    private volatile AtomicLongArray slots = new AtomicLongArray(INITIAL_CAPACITY);
+    private int size;
+
+    public interface Visitor {
+        void visit(int securityIndex, int position);
+    }
+
+    private static long pack(int securityIndex, int position) {
+        return ((long) (securityIndex + 1) << 32) | (position & 0xFFFFFFFFL);
+    }
+
+    private static int securityIndexOf(long slot) {
+        return (int) (slot >>> 32) - 1;
+    }
+
+    private static int positionOf(long slot) {
+        return (int) slot;
+    }
+
+    private static int slotOf(int securityIndex, int mask) {
+        int hash = securityIndex * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private static int find(AtomicLongArray table, int securityIndex) {
+        if (securityIndex < 0)
+            throw new IllegalArgumentException("Security has no index: " + securityIndex);
+        int mask = table.length() - 1;
+        int slot = slotOf(securityIndex, mask);
+        long entry;
+        while ((entry = table.get(slot)) != 0) {
+            if (securityIndexOf(entry) == securityIndex)
+                return slot;
+            slot = (slot + 1) & mask;
+        }
+        return -slot - 1;
+    }
+
+    int get(int securityIndex) {
+        AtomicLongArray table = slots;
+        int slot = find(table, securityIndex);
+        return slot < 0 ? 0 : positionOf(table.get(slot));
+    }
+
+    synchronized boolean tryAdd(int securityIndex, int amount) {
+        AtomicLongArray table = slots;
+        int slot = find(table, securityIndex);
+        long position = (slot < 0 ? 0 : positionOf(table.get(slot))) + (long) amount;
+        if (position < 0 || position > Integer.MAX_VALUE)
+            return false;
+        if (slot >= 0) {
+            table.set(slot, pack(securityIndex, (int) position));
+            return true;
+        }
+        if (2 * (size + 1) > table.length()) {
+            table = grow(table);
+            slot = find(table, securityIndex);
+        }
+        table.set(-slot - 1, pack(securityIndex, (int) position));
+        size++;
+        slots = table;
+        return true;
+    }
+
+    private AtomicLongArray grow(AtomicLongArray table) {
+        AtomicLongArray grown = new AtomicLongArray(table.length() * 2);
+        for (int i = 0; i < table.length(); i++) {
+            long entry = table.get(i);
+            if (entry != 0)
+                grown.set(-find(grown, securityIndexOf(entry)) - 1, entry);
+        }
+        return grown;
+    }
+
+    public void forEach(Visitor visitor) {
+        AtomicLongArray table = slots;
+        for (int i = 0; i < table.length(); i++) {
+            long entry = table.get(i);
+            if (entry != 0)
+                visitor.visit(securityIndexOf(entry), positionOf(entry));
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner joiner = new StringJoiner(", ", "{", "}");
+        forEach((securityIndex, position) -> joiner.add(securityIndex + "=" + position));
+        return joiner.toString();
+    }
+}
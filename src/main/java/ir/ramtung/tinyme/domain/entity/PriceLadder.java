@@ -0,0 +1,162 @@
+package ir.ramtung.tinyme.domain.entity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+class PriceLadder extends PriceLevels {
+    private final int tickSize;
+    private final PriceLevel[] slots;
+    private final TreePriceLevels overflow;
+    private long basePrice;
+    private int levelCount;
+    private int bestIndex = -1;
+
+    PriceLadder(Side side, int tickSize, int windowSize) {
+        super(side);
+        this.tickSize = tickSize;
+        this.slots = new PriceLevel[windowSize];
+        this.overflow = new TreePriceLevels(side);
+        this.basePrice = Long.MIN_VALUE;
+    }
+
+    private int indexOf(int price) {
+        if (basePrice == Long.MIN_VALUE)
+            return -1;
+        long offset = price - basePrice;
+        if (offset < 0 || offset % tickSize != 0 || offset / tickSize >= slots.length)
+            return -1;
+        return (int) (offset / tickSize);
+    }
+
+    private boolean isBetterIndex(int index, int otherIndex) {
+        return ascending ? index < otherIndex : index > otherIndex;
+    }
+
+    @Override
+    boolean isEmpty() {
+        return levelCount == 0 && overflow.isEmpty();
+    }
+
+    @Override
+    PriceLevel best() {
+        PriceLevel overflowBest = overflow.best();
+        if (levelCount == 0)
+            return overflowBest;
+        PriceLevel ladderBest = slots[bestIndex];
+        if (overflowBest == null || isBetter(ladderBest.getPrice(), overflowBest.getPrice()))
+            return ladderBest;
+        return overflowBest;
+    }
+
+    @Override
+    PriceLevel levelFor(int price) {
+        int index = indexOf(price);
+        if (index < 0) {
+            if (levelCount != 0)
+                return overflow.levelFor(price);
+            recenter(price);
+            index = indexOf(price);
+            if (index < 0)
+                return overflow.levelFor(price);
+        }
+        PriceLevel level = slots[index];
+        if (level == null) {
+            level = new PriceLevel(price);
+            slots[index] = level;
+        }
+        if (level.isEmpty())
+            occupy(index);
+        return level;
+    }
+
+    private void occupy(int index) {
+        levelCount++;
+        if (bestIndex < 0 || isBetterIndex(index, bestIndex))
+            bestIndex = index;
+    }
+
+    @Override
+    void remove(PriceLevel level) {
+        int index = indexOf(level.getPrice());
+        if (index < 0 || slots[index] != level) {
+            overflow.remove(level);
+            return;
+        }
+        levelCount--;
+        if (levelCount == 0)
+            bestIndex = -1;
+        else if (index == bestIndex)
+            bestIndex = nextOccupied(index);
+    }
+
+    private int nextOccupied(int index) {
+        int step = ascending ? 1 : -1;
+        for (int i = index + step; i >= 0 && i < slots.length; i += step) {
+            if (slots[i] != null && !slots[i].isEmpty())
+                return i;
+        }
+        return -1;
+    }
+
+    @Override
+    PriceLevel after(int price) {
+        PriceLevel overflowAfter = overflow.after(price);
+        PriceLevel ladderAfter = null;
+        if (levelCount != 0) {
+            long offset = price - basePrice;
+            long start = ascending ? Math.max(Math.floorDiv(offset, tickSize) + 1, 0)
+                    : Math.min(-Math.floorDiv(-offset, tickSize) - 1, slots.length - 1);
+            int step = ascending ? 1 : -1;
+            for (long i = start; i >= 0 && i < slots.length; i += step) {
+                if (slots[(int) i] != null && !slots[(int) i].isEmpty()) {
+                    ladderAfter = slots[(int) i];
+                    break;
+                }
+            }
+        }
+        if (ladderAfter == null)
+            return overflowAfter;
+        if (overflowAfter == null || isBetter(ladderAfter.getPrice(), overflowAfter.getPrice()))
+            return ladderAfter;
+        return overflowAfter;
+    }
+
+    private void recenter(int price) {
+        if (price % tickSize != 0)
+            return;
+        basePrice = (long) price - (long) (slots.length / 2) * tickSize;
+        Arrays.fill(slots, null);
+        bestIndex = -1;
+        List<PriceLevel> migrated = new ArrayList<>();
+        overflow.forEach(level -> {
+            if (indexOf(level.getPrice()) >= 0)
+                migrated.add(level);
+        });
+        for (PriceLevel level : migrated) {
+            overflow.remove(level);
+            int index = indexOf(level.getPrice());
+            slots[index] = level;
+            occupy(index);
+        }
+    }
+
+    @Override
+    void forEach(Consumer<PriceLevel> action) {
+        List<PriceLevel> outside = new ArrayList<>();
+        overflow.forEach(outside::add);
+        int next = 0;
+        int step = ascending ? 1 : -1;
+        for (int i = ascending ? 0 : slots.length - 1; i >= 0 && i < slots.length; i += step) {
+            PriceLevel level = slots[i];
+            if (level == null || level.isEmpty())
+                continue;
+            while (next < outside.size() && isBetter(outside.get(next).getPrice(), level.getPrice()))
+                action.accept(outside.get(next++));
+            action.accept(level);
+        }
+        while (next < outside.size())
+            action.accept(outside.get(next++));
+    }
+}
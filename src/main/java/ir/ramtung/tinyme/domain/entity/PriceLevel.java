@@ -0,0 +1,109 @@
+package ir.ramtung.tinyme.domain.entity;
+
+import lombok.Getter;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+class PriceLevel implements Iterable<Order> {
+    @Getter
+    private final int price;
+    private OrderNode head;
+    private OrderNode tail;
+    @Getter
+    private int quantity;
+    @Getter
+    private int orderCount;
+
+    PriceLevel(int price) {
+        this.price = price;
+    }
+
+    boolean isEmpty() {
+        return head == null;
+    }
+
+    Order getFirst() {
+        return head.order;
+    }
+
+    OrderNode getFirstNode() {
+        return head;
+    }
+
+    void changeQuantity(int amount) {
+        quantity += amount;
+    }
+
+    void addLast(OrderNode node) {
+        attach(node);
+        node.prev = tail;
+        node.next = null;
+        if (tail == null)
+            head = node;
+        else
+            tail.next = node;
+        tail = node;
+    }
+
+    void addFirst(OrderNode node) {
+        attach(node);
+        node.prev = null;
+        node.next = head;
+        if (head == null)
+            tail = node;
+        else
+            head.prev = node;
+        head = node;
+    }
+
+    private void attach(OrderNode node) {
+        node.level = this;
+        quantity += node.order.getQuantity();
+        orderCount++;
+    }
+
+    void moveToBack(OrderNode node) {
+        if (node == tail)
+            return;
+        unlink(node);
+        addLast(node);
+    }
+
+    void unlink(OrderNode node) {
+        quantity -= node.order.getQuantity();
+        orderCount--;
+        if (node.prev == null)
+            head = node.next;
+        else
+            node.prev.next = node.next;
+        if (node.next == null)
+            tail = node.prev;
+        else
+            node.next.prev = node.prev;
+        node.prev = null;
+        node.next = null;
+        node.level = null;
+    }
+
+    @Override
+    public Iterator<Order> iterator() {
+        return new Iterator<>() {
+            private OrderNode current = head;
+
+            @Override
+            public boolean hasNext() {
+                return current != null;
+            }
+
+            @Override
+            public Order next() {
+                if (current == null)
+                    throw new NoSuchElementException();
+                Order order = current.order;
+                current = current.next;
+                return order;
+            }
+        };
+    }
+}
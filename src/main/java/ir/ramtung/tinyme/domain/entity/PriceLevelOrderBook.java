@@ -0,0 +1,222 @@
+package ir.ramtung.tinyme.domain.entity;
+
+import ir.ramtung.tinyme.messaging.request.EnterOrderRq;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+public class PriceLevelOrderBook extends OrderBook {
+    private final PriceLevels buyLevels;
+    private final PriceLevels sellLevels;
+    private final OrderIndex buyNodeByOrderId = new OrderIndex();
+    private final OrderIndex sellNodeByOrderId = new OrderIndex();
+    private OrderNode freeNodes;
+
+    public PriceLevelOrderBook() {
+        this(new TreePriceLevels(Side.BUY), new TreePriceLevels(Side.SELL));
+    }
+
+    PriceLevelOrderBook(PriceLevels buyLevels, PriceLevels sellLevels) {
+        super();
+        this.buyLevels = buyLevels;
+        this.sellLevels = sellLevels;
+    }
+
+    private PriceLevels getLevels(Side side) {
+        return side == Side.BUY ? buyLevels : sellLevels;
+    }
+
+    private OrderIndex getNodeByOrderId(Side side) {
+        return side == Side.BUY ? buyNodeByOrderId : sellNodeByOrderId;
+    }
+
+    protected int levelKey(Order order) {
+        return order.getPrice();
+    }
+
+    protected void forEachLevelBefore(Side side, int key, Consumer<Order> action) {
+        PriceLevels levels = getLevels(side);
+        for (PriceLevel level = levels.best(); level != null && levels.isBetter(level.getPrice(), key); level = levels.after(level.getPrice()))
+            for (Order order : level)
+                action.accept(order);
+    }
+
+    private OrderNode link(Order order) {
+        order.queue();
+        OrderNode node = acquireNode(order);
+        getNodeByOrderId(order.getSide()).put(order.getOrderId(), node);
+        added(order);
+        return node;
+    }
+
+    private void unlink(OrderNode node) {
+        PriceLevel level = node.level;
+        level.unlink(node);
+        if (level.isEmpty())
+            getLevels(node.order.getSide()).remove(level);
+        removed(node.order);
+        releaseNode(node);
+    }
+
+    private OrderNode acquireNode(Order order) {
+        OrderNode node = freeNodes;
+        if (node == null)
+            node = new OrderNode();
+        else
+            freeNodes = node.next;
+        node.order = order;
+        node.next = null;
+        return node;
+    }
+
+    private void releaseNode(OrderNode node) {
+        node.order = null;
+        node.next = freeNodes;
+        freeNodes = node;
+    }
+
+    @Override
+    public void enqueue(Order order) {
+        OrderNode node = link(order);
+        getLevels(order.getSide()).levelFor(levelKey(order)).addLast(node);
+    }
+
+    @Override
+    public Order findByOrderId(Side side, long orderId) {
+        OrderNode node = getNodeByOrderId(side).get(orderId);
+        return node == null ? null : node.order;
+    }
+
+    @Override
+    public boolean removeByOrderId(Side side, long orderId) {
+        OrderNode node = getNodeByOrderId(side).remove(orderId);
+        if (node == null)
+            return false;
+        unlink(node);
+        return true;
+    }
+
+    @Override
+    public Iterator<Order> ordersInPriority(Side side) {
+        PriceLevels levels = getLevels(side);
+        return new Iterator<>() {
+            private PriceLevel level = levels.best();
+            private OrderNode node = level == null ? null : level.getFirstNode();
+
+            @Override
+            public boolean hasNext() {
+                return node != null;
+            }
+
+            @Override
+            public Order next() {
+                if (node == null)
+                    throw new NoSuchElementException();
+                Order order = node.order;
+                node = node.next;
+                if (node == null) {
+                    level = levels.after(level.getPrice());
+                    node = level == null ? null : level.getFirstNode();
+                }
+                return order;
+            }
+        };
+    }
+
+    @Override
+    public Order matchWithFirst(Order newOrder) {
+        Order first = getLevels(newOrder.getSide().opposite()).best().getFirst();
+        if (newOrder.matches(first))
+            return first;
+        else
+            return null;
+    }
+
+    @Override
+    public void putBack(Order order) {
+        OrderNode node = link(order);
+        getLevels(order.getSide()).levelFor(levelKey(order)).addFirst(node);
+    }
+
+    @Override
+    public boolean hasOrderOfType(Side side) {
+        return !getLevels(side).isEmpty();
+    }
+
+    @Override
+    public void removeFirst(Side side) {
+        OrderNode node = getLevels(side).best().getFirstNode();
+        getNodeByOrderId(side).remove(node.order.getOrderId());
+        unlink(node);
+    }
+
+    @Override
+    public void replenishFirst(IcebergOrder icebergOrder) {
+        OrderNode node = getLevels(icebergOrder.getSide()).best().getFirstNode();
+        int displayed = icebergOrder.getQuantity();
+        removed(icebergOrder);
+        icebergOrder.decreaseQuantity(icebergOrder.getQuantity());
+        icebergOrder.replenish();
+        added(icebergOrder);
+        node.level.changeQuantity(icebergOrder.getQuantity() - displayed);
+        node.level.moveToBack(node);
+    }
+
+    @Override
+    public void decreaseQuantity(Order order, int amount) {
+        super.decreaseQuantity(order, amount);
+        OrderNode node = getNodeByOrderId(order.getSide()).get(order.getOrderId());
+        if (node != null && node.order == order)
+            node.level.changeQuantity(-amount);
+    }
+
+    @Override
+    public void amend(Order order, EnterOrderRq updateOrderRq) {
+        OrderNode node = getNodeByOrderId(order.getSide()).get(order.getOrderId());
+        int displayed = order.getQuantity();
+        super.amend(order, updateOrderRq);
+        if (node != null && node.order == order)
+            node.level.changeQuantity(order.getQuantity() - displayed);
+    }
+
+    @Override
+    protected void depthChanged(Order order, int quantity, int orderCount) {
+    }
+
+    @Override
+    public Depth getDepth(int count) {
+        return new Depth(depthOf(buyLevels, count), depthOf(sellLevels, count));
+    }
+
+    private static List<DepthLevel> depthOf(PriceLevels levels, int count) {
+        List<DepthLevel> depth = new ArrayList<>(Math.max(count, 0));
+        for (PriceLevel level = levels.best(); level != null && depth.size() < count; level = levels.after(level.getPrice()))
+            depth.add(new DepthLevel(level.getPrice(), level.getQuantity(), level.getOrderCount()));
+        return depth;
+    }
+
+    @Override
+    public LinkedList<Order> getBuyQueue() {
+        return flatten(buyLevels);
+    }
+
+    @Override
+    public LinkedList<Order> getSellQueue() {
+        return flatten(sellLevels);
+    }
+
+    private static LinkedList<Order> flatten(PriceLevels levels) {
+        LinkedList<Order> queue = new LinkedList<>();
+        levels.forEach(level -> level.forEach(queue::add));
+        return queue;
+    }
+
+    @Override
+    public OrderBookType getType() {
+        return OrderBookType.PRICE_LEVEL;
+    }
+}
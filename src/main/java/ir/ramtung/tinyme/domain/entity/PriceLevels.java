@@ -0,0 +1,31 @@
+package ir.ramtung.tinyme.domain.entity;
+
+import java.util.function.Consumer;
+
+abstract class PriceLevels {
+    protected final boolean ascending;
+
+    PriceLevels(boolean ascending) {
+        this.ascending = ascending;
+    }
+
+    PriceLevels(Side side) {
+        this(side == Side.SELL);
+    }
+
+    abstract boolean isEmpty();
+
+    abstract PriceLevel best();
+
+    abstract PriceLevel levelFor(int price);
+
+    abstract void remove(PriceLevel level);
+
+    abstract PriceLevel after(int price);
+
+    abstract void forEach(Consumer<PriceLevel> action);
+
+    protected boolean isBetter(int price, int otherPrice) {
+        return ascending ? price < otherPrice : price > otherPrice;
+    }
+}
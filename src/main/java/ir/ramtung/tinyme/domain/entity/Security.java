@@ -9,12 +9,17 @@ import ir.ramtung.tinyme.messaging.request.DeleteOrderRq;
 import ir.ramtung.tinyme.messaging.request.EnterOrderRq;
 import ir.ramtung.tinyme.domain.service.Matcher;
 import ir.ramtung.tinyme.messaging.Message;
+import lombok.AccessLevel;
 import lombok.Builder;
 import lombok.Getter;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 
 import ir.ramtung.tinyme.messaging.EventPublisher;
@@ -23,6 +28,9 @@ import lombok.Setter;
 @Getter
 @Builder
 public class Security {
+    private static final int OPTIMISTIC_SNAPSHOT_ATTEMPTS = 3;
+    @Builder.Default
+    private final int index = -1;
     private String isin;
     @Builder.Default
     private int tickSize = 1;
@@ -35,46 +43,165 @@ public class Security {
     @Builder.Default
     private int lastTransactionPrice = 0;
     @Builder.Default
-    private final LinkedList<Order> executableOrders = new LinkedList<>();
+    private final ArrayDeque<StopLimitOrder> executableOrders = new ArrayDeque<>(64);
+    @Builder.Default
+    private MatchingState matchingState = MatchingState.CONTINUOUS;
+    @Builder.Default
+    @Getter(AccessLevel.NONE)
+    private final StampedLock bookLock = new StampedLock();
+    private long version;
 
 
-    public MatchResult newOrder(EnterOrderRq enterOrderRq, Broker broker, Shareholder shareholder, Matcher matcher) throws InvalidRequestException {
-        if (enterOrderRq.getSide() == Side.SELL &&
-                !shareholder.hasEnoughPositionsOn(this,
-                orderBook.totalSellQuantityByShareholder(shareholder) + enterOrderRq.getQuantity()))
-            return MatchResult.notEnoughPositions();
-        Order order;
+    public long getOffHeapMemoryUsage() {
+        return orderBook.getOffHeapMemoryUsage() + inactiveOrderBook.getOffHeapMemoryUsage();
+    }
+
+    public long beginUpdate() {
+        return bookLock.writeLock();
+    }
+
+    public void endUpdate(long stamp) {
+        version++;
+        bookLock.unlockWrite(stamp);
+    }
+
+    public BookSnapshot snapshot() {
+        for (int attempt = 0; attempt < OPTIMISTIC_SNAPSHOT_ATTEMPTS; attempt++) {
+            long stamp = bookLock.tryOptimisticRead();
+            if (stamp != 0) {
+                try {
+                    BookSnapshot snapshot = copyBooks();
+                    if (bookLock.validate(stamp))
+                        return snapshot;
+                } catch (RuntimeException e) {
+                    if (bookLock.validate(stamp))
+                        throw e;
+                }
+            }
+            Thread.onSpinWait();
+        }
+        long stamp = bookLock.readLock();
+        try {
+            return copyBooks();
+        } finally {
+            bookLock.unlockRead(stamp);
+        }
+    }
+
+    private BookSnapshot copyBooks() {
+        return new BookSnapshot(version, lastTransactionPrice,
+                copyOf(orderBook.ordersInPriority(Side.BUY)), copyOf(orderBook.ordersInPriority(Side.SELL)),
+                copyOf(inactiveOrderBook.ordersInPriority(Side.BUY)), copyOf(inactiveOrderBook.ordersInPriority(Side.SELL)));
+    }
+
+    private static List<Order> copyOf(Iterator<Order> orders) {
+        List<Order> copy = new ArrayList<>();
+        while (orders.hasNext())
+            copy.add(orders.next().copy());
+        return Collections.unmodifiableList(copy);
+    }
+
+    public Depth getDepth(int levels) {
+        return orderBook.getDepth(levels);
+    }
+
+    private Order createOrder(EnterOrderRq enterOrderRq, Broker broker, Shareholder shareholder) throws InvalidRequestException {
         if (enterOrderRq.getPeakSize() == 0 && enterOrderRq.getStopPrice() == 0)
-            order = new Order(enterOrderRq.getOrderId(), this, enterOrderRq.getSide(),
+            return new Order(enterOrderRq.getOrderId(), this, enterOrderRq.getSide(),
                     enterOrderRq.getQuantity(), enterOrderRq.getPrice(), broker, shareholder, enterOrderRq.getEntryTime(), enterOrderRq.getMinimumExecutionQuantity());
         else if (enterOrderRq.getPeakSize() != 0 && enterOrderRq.getStopPrice() == 0)
-            order = new IcebergOrder(enterOrderRq.getOrderId(), this, enterOrderRq.getSide(),
+            return new IcebergOrder(enterOrderRq.getOrderId(), this, enterOrderRq.getSide(),
                     enterOrderRq.getQuantity(), enterOrderRq.getPrice(), broker, shareholder,
                     enterOrderRq.getEntryTime(), enterOrderRq.getPeakSize(), enterOrderRq.getMinimumExecutionQuantity());
-        else if (enterOrderRq.getStopPrice() != 0 && enterOrderRq.getPeakSize() == 0) {
-            StopLimitOrder stopLimitOrder = new StopLimitOrder(enterOrderRq.getOrderId(), this, enterOrderRq.getSide(),
+        else if (enterOrderRq.getStopPrice() != 0 && enterOrderRq.getPeakSize() == 0)
+            return new StopLimitOrder(enterOrderRq.getOrderId(), this, enterOrderRq.getSide(),
                     enterOrderRq.getQuantity(), enterOrderRq.getPrice(), broker, shareholder,
                     enterOrderRq.getEntryTime(), enterOrderRq.getMinimumExecutionQuantity(),
                     enterOrderRq.getStopPrice(), enterOrderRq.getRequestId());
-            if ( (stopLimitOrder.getSide() == Side.BUY && stopLimitOrder.getStopPrice() <= lastTransactionPrice) || (stopLimitOrder.getSide() == Side.SELL && stopLimitOrder.getStopPrice() >= lastTransactionPrice) ){
-                order = stopLimitOrder;
-            }
-            else{
-                if (stopLimitOrder.getSide() == Side.BUY) {
-                    if (!stopLimitOrder.getBroker().hasEnoughCredit(stopLimitOrder.getValue())) {
-                        return MatchResult.notEnoughCredit();
-                    }
+        else
+            throw new InvalidRequestException(Message.ORDER_CANNOT_BE_BOTH_A_STOP_LIMIT_AND_AN_ICEBERG);
+    }
+
+    private boolean isActive(StopLimitOrder stopLimitOrder) {
+        return isActive(stopLimitOrder.getSide(), stopLimitOrder.getStopPrice());
+    }
+
+    private boolean isActive(Side side, int stopPrice) {
+        return (side == Side.BUY && stopPrice <= lastTransactionPrice)
+                || (side == Side.SELL && stopPrice >= lastTransactionPrice);
+    }
+
+    private boolean hasEnoughPositions(EnterOrderRq enterOrderRq, Shareholder shareholder) {
+        return enterOrderRq.getSide() != Side.SELL || shareholder.hasEnoughPositionsOn(this,
+                orderBook.totalSellQuantityByShareholder(shareholder) + enterOrderRq.getQuantity());
+    }
+
+    public MatchResult newOrder(EnterOrderRq enterOrderRq, Broker broker, Shareholder shareholder, Matcher matcher) throws InvalidRequestException {
+        if (!hasEnoughPositions(enterOrderRq, shareholder))
+            return MatchResult.notEnoughPositions();
+        Order order = createOrder(enterOrderRq, broker, shareholder);
+        if (order instanceof StopLimitOrder stopLimitOrder && !isActive(stopLimitOrder)) {
+            if (stopLimitOrder.getSide() == Side.BUY) {
+                if (!stopLimitOrder.getBroker().hasEnoughCredit(stopLimitOrder.getValue())) {
+                    return MatchResult.notEnoughCredit();
                 }
-                inactiveOrderBook.enqueue(stopLimitOrder);
-                return MatchResult.queuedAsInactiveOrder();
             }
+            inactiveOrderBook.enqueue(stopLimitOrder);
+            return MatchResult.queuedAsInactiveOrder();
         }
-        else
-            throw new InvalidRequestException(Message.ORDER_CANNOT_BE_BOTH_A_STOP_LIMIT_AND_AN_ICEBERG);
+        if (matchingState == MatchingState.AUCTION)
+            return queueForAuction(order, 0);
         MatchResult matchResult = matcher.execute(order);
         return matchResult;
     }
 
+    private MatchResult queueForAuction(Order order, long heldCredit) {
+        if (order.getSide() == Side.BUY && !order.getBroker().tryReserve(order.getValue() - heldCredit))
+            return MatchResult.notEnoughCredit();
+        orderBook.enqueue(order);
+        return MatchResult.executed(order, List.of());
+    }
+
+    public void startAuction() {
+        long stamp = beginUpdate();
+        try {
+            matchingState = MatchingState.AUCTION;
+        } finally {
+            endUpdate(stamp);
+        }
+    }
+
+    public MatchResult endAuction(Matcher matcher) {
+        long stamp = beginUpdate();
+        try {
+            matchingState = MatchingState.CONTINUOUS;
+            MatchResult matchResult = matcher.uncross(this);
+            if (!matchResult.trades().isEmpty())
+                checkExecutableOrders(matchResult);
+            return matchResult;
+        } finally {
+            endUpdate(stamp);
+        }
+    }
+
+    public MatchPlan simulateOrder(EnterOrderRq enterOrderRq, Broker broker, Shareholder shareholder, Matcher matcher) throws InvalidRequestException {
+        long stamp = bookLock.readLock();
+        try {
+            if (!hasEnoughPositions(enterOrderRq, shareholder))
+                return MatchPlan.withoutFills(MatchingOutcome.NOT_ENOUGH_POSITIONS, enterOrderRq.getQuantity());
+            if (enterOrderRq.getPeakSize() != 0 && enterOrderRq.getStopPrice() != 0)
+                throw new InvalidRequestException(Message.ORDER_CANNOT_BE_BOTH_A_STOP_LIMIT_AND_AN_ICEBERG);
+            if (enterOrderRq.getStopPrice() != 0 && !isActive(enterOrderRq.getSide(), enterOrderRq.getStopPrice())) {
+                if (enterOrderRq.getSide() == Side.BUY && !broker.hasEnoughCredit((long) enterOrderRq.getPrice() * enterOrderRq.getQuantity()))
+                    return MatchPlan.withoutFills(MatchingOutcome.NOT_ENOUGH_CREDIT, enterOrderRq.getQuantity());
+                return MatchPlan.withoutFills(MatchingOutcome.QUEUED_AS_INACTIVE_ORDER, enterOrderRq.getQuantity());
+            }
+            return matcher.plan(this, enterOrderRq.getSide(), enterOrderRq.getPrice(), enterOrderRq.getQuantity(), broker, enterOrderRq.getMinimumExecutionQuantity());
+        } finally {
+            bookLock.unlockRead(stamp);
+        }
+    }
+
     public void deleteOrder(DeleteOrderRq deleteOrderRq) throws InvalidRequestException {
         Order order = orderBook.findByOrderId(deleteOrderRq.getSide(), deleteOrderRq.getOrderId());
         if (order == null)
@@ -86,17 +213,13 @@ public class Security {
             return;
         }
         if (order.getSide() == Side.BUY)
-            order.getBroker().increaseCreditBy(order.getValue());
+            order.getBroker().release(order.getValue());
         orderBook.removeByOrderId(deleteOrderRq.getSide(), deleteOrderRq.getOrderId());
     }
 
     public MatchResult updateOrder(EnterOrderRq updateOrderRq, Matcher matcher) throws InvalidRequestException {
-        Order order;
-        if (updateOrderRq.getStopPrice() != 0) {
-            order = inactiveOrderBook.findByOrderId(updateOrderRq.getSide(), updateOrderRq.getOrderId());
-        }
-        else
-            order = orderBook.findByOrderId(updateOrderRq.getSide(), updateOrderRq.getOrderId());
+        OrderBook book = updateOrderRq.getStopPrice() != 0 ? inactiveOrderBook : orderBook;
+        Order order = book.findByOrderId(updateOrderRq.getSide(), updateOrderRq.getOrderId());
         if (order == null)
             throw new InvalidRequestException(Message.ORDER_ID_NOT_FOUND);
         if ((order instanceof IcebergOrder) && updateOrderRq.getPeakSize() == 0)
@@ -105,7 +228,6 @@ public class Security {
             throw new InvalidRequestException(Message.CANNOT_SPECIFY_PEAK_SIZE_FOR_A_NON_ICEBERG_ORDER);
         if (order.getMinimumExecutionQuantity() != updateOrderRq.getMinimumExecutionQuantity())
             throw new InvalidRequestException(Message.CANNOT_CHANGE_MINIMUM_EXECUTION_QUANTITY);
-        order.markAsUpdated();
 
         if (updateOrderRq.getSide() == Side.SELL &&
                 !order.getShareholder().hasEnoughPositionsOn(this,
@@ -116,8 +238,24 @@ public class Security {
                 || updateOrderRq.getPrice() != order.getPrice()
                 || ((order instanceof IcebergOrder icebergOrder) && (icebergOrder.getPeakSize() < updateOrderRq.getPeakSize()));
 
+        if (losesPriority && matchingState == MatchingState.AUCTION) {
+            long amendedValue = (long) updateOrderRq.getPrice() * updateOrderRq.getQuantity();
+            if (updateOrderRq.getSide() == Side.BUY && !order.getBroker().hasEnoughCredit(amendedValue - order.getValue()))
+                return MatchResult.notEnoughCredit();
+        }
+        else if (losesPriority && !(order instanceof StopLimitOrder)) {
+            Order amendedOrder = order.snapshot();
+            amendedOrder.updateFromRequest(updateOrderRq);
+            amendedOrder.markAsNew();
+            amendedOrder.markAsUpdated();
+            MatchPlan plan = matcher.plan(amendedOrder, updateOrderRq.getSide() == Side.BUY ? order.getValue() : 0);
+            if (plan.outcome() != MatchingOutcome.EXECUTED)
+                return MatchResult.rejected(plan.outcome());
+        }
+        order.markAsUpdated();
+
         Order originalOrder = order.snapshot();
-        order.updateFromRequest(updateOrderRq);
+        book.amend(order, updateOrderRq);
 
         if (order instanceof StopLimitOrder stopLimitOrder) {
             if (stopLimitOrder.mustBeActive(lastTransactionPrice)){
@@ -127,6 +265,10 @@ public class Security {
             }
             else {
                 if (stopLimitOrder.getStopPrice() != ((StopLimitOrder) originalOrder).getStopPrice()){
+                    if (stopLimitOrder.isTriggered()) {
+                        stopLimitOrder.clearTriggered();
+                        executableOrders.removeIf(executableOrder -> executableOrder == stopLimitOrder);
+                    }
                     inactiveOrderBook.removeByOrderId(stopLimitOrder.getSide(), stopLimitOrder.getOrderId());
                     inactiveOrderBook.enqueue(stopLimitOrder);
                     return MatchResult.executed(null, List.of());
@@ -134,30 +276,21 @@ public class Security {
             }
         }
 
-        if (updateOrderRq.getSide() == Side.BUY) {
-            order.getBroker().increaseCreditBy(originalOrder.getValue());
-        }
-
+        long heldCredit = updateOrderRq.getSide() == Side.BUY ? originalOrder.getValue() : 0;
         if (!losesPriority) {
-            if (updateOrderRq.getSide() == Side.BUY) {
-                order.getBroker().decreaseCreditBy(order.getValue());
-            }
+            if (updateOrderRq.getSide() == Side.BUY)
+                order.getBroker().release(heldCredit - order.getValue());
             return MatchResult.executed(null, List.of());
         }
-        else
-            order.markAsNew();
 
         orderBook.removeByOrderId(updateOrderRq.getSide(), updateOrderRq.getOrderId());
-        MatchResult matchResult = matcher.execute(order);
-        if (matchResult.outcome() != MatchingOutcome.EXECUTED) {
+        order.markAsNew();
+        MatchResult matchResult = matchingState == MatchingState.AUCTION
+                ? queueForAuction(order, heldCredit) : matcher.execute(order, heldCredit);
+        if (matchResult.outcome() != MatchingOutcome.EXECUTED)
             orderBook.enqueue(originalOrder);
-            if (updateOrderRq.getSide() == Side.BUY) {
-                originalOrder.getBroker().decreaseCreditBy(originalOrder.getValue());
-            }
-        }
-        else
-            if(!matchResult.trades().isEmpty())
-                lastTransactionPrice = matchResult.trades().getLast().getPrice();
+        else if (!matchResult.trades().isEmpty())
+            lastTransactionPrice = matchResult.trades().getLast().getPrice();
 
         return matchResult;
     }
@@ -173,27 +306,26 @@ public class Security {
     }
 
     public void findExecutableOrders(Side side){
-        while (inactiveOrderBook.hasOrderOfType(side)){
-            StopLimitOrder stopLimitOrder = inactiveOrderBook.checkFirstInactiveOrder(side, lastTransactionPrice);
-            if(stopLimitOrder == null){
-                return;
-            }
-            executableOrders.add(stopLimitOrder);
-            inactiveOrderBook.removeFirst(side);
-        }
+        inactiveOrderBook.collectTriggeredOrders(side, lastTransactionPrice, executableOrders);
+    }
+
+    public boolean hasExecutableOrders() {
+        return !executableOrders.isEmpty();
     }
 
-    public LinkedList<MatchResult> runExecutableOrders(Matcher matcher){
-        LinkedList<MatchResult> results = new LinkedList<>();
-        while (!executableOrders.isEmpty()){
-            StopLimitOrder executableOrder = (StopLimitOrder) executableOrders.removeFirst();
+    public void runExecutableOrders(Matcher matcher, int budget, BiConsumer<StopLimitOrder, MatchResult> listener) {
+        int executed = 0;
+        while (executed < budget && !executableOrders.isEmpty()) {
+            StopLimitOrder executableOrder = executableOrders.pollFirst();
+            if (inactiveOrderBook.findByOrderId(executableOrder.getSide(), executableOrder.getOrderId()) != executableOrder)
+                continue;
+            inactiveOrderBook.removeByOrderId(executableOrder.getSide(), executableOrder.getOrderId());
+            executed++;
             MatchResult matchResult = matcher.execute(executableOrder);
-            if (!matchResult.trades().isEmpty()) {
+            if (!matchResult.trades().isEmpty())
                 checkExecutableOrders(matchResult);
-            }
-            results.add(matchResult);
+            listener.accept(executableOrder, matchResult);
         }
-        return results;
     }
 }
 
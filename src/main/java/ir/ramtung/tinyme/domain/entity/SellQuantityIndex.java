@@ -0,0 +1,65 @@
+package ir.ramtung.tinyme.domain.entity;
+
+class SellQuantityIndex {
+    private static final int INITIAL_CAPACITY = 16;
+    private long[] keys;
+    private int[] quantities;
+    private boolean[] used;
+    private int mask;
+    private int size;
+
+    SellQuantityIndex() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        quantities = new int[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+    }
+
+    private int slotOf(long shareholderId) {
+        long hash = shareholderId * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    int get(long shareholderId) {
+        int slot = slotOf(shareholderId);
+        while (used[slot]) {
+            if (keys[slot] == shareholderId)
+                return quantities[slot];
+            slot = (slot + 1) & mask;
+        }
+        return 0;
+    }
+
+    void add(long shareholderId, int amount) {
+        if (2 * (size + 1) > used.length)
+            grow();
+        int slot = slotOf(shareholderId);
+        while (used[slot]) {
+            if (keys[slot] == shareholderId) {
+                quantities[slot] += amount;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        used[slot] = true;
+        keys[slot] = shareholderId;
+        quantities[slot] = amount;
+        size++;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldQuantities = quantities;
+        boolean[] oldUsed = used;
+        allocate(oldUsed.length * 2);
+        size = 0;
+        for (int i = 0; i < oldUsed.length; i++) {
+            if (oldUsed[i])
+                add(oldKeys[i], oldQuantities[i]);
+        }
+    }
+}
@@ -5,9 +5,6 @@ import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.ToString;
 
-import java.util.HashMap;
-import java.util.Map;
-
 @ToString
 @EqualsAndHashCode(onlyExplicitlyIncluded = true)
 @Builder
@@ -17,23 +14,30 @@ public class Shareholder {
     private long shareholderId;
     @Getter
     private String name;
-    @Getter
     @Builder.Default
-    private Map<Security, Integer> positions = new HashMap<>();
+    private final PositionMap positions = new PositionMap();
 
     public void incPosition(Security security, int amount) {
         assert amount >= 0;
-        positions.put(security, positions.getOrDefault(security, 0) + amount);
+        if (!positions.tryAdd(security.getIndex(), amount))
+            throw new IllegalArgumentException("Position overflows for security " + security.getIsin());
     }
 
     public void decPosition(Security security, int amount) {
         assert amount >= 0;
-        int currentPositions = positions.getOrDefault(security, 0);
-        if (currentPositions < amount)
+        if (!positions.tryAdd(security.getIndex(), -amount))
             throw new IllegalArgumentException("Amount to be decreased is greater than shareholder's current position");
-        positions.put(security, currentPositions - amount);
     }
+
     public boolean hasEnoughPositionsOn(Security security, int position) {
-        return positions.getOrDefault(security, 0) >= position;
+        return positions.get(security.getIndex()) >= position;
+    }
+
+    public int getPosition(Security security) {
+        return positions.get(security.getIndex());
+    }
+
+    public void forEachPosition(PositionMap.Visitor visitor) {
+        positions.forEach(visitor);
     }
 }
@@ -14,6 +14,9 @@ public class StopLimitOrder extends Order{
 
     protected int StopPrice;
     protected long requestId;
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private boolean triggered;
 
     StopLimitOrder(long orderId, Security security, Side side, int quantity, int price, Broker broker, Shareholder shareholder, LocalDateTime entryTime, OrderStatus status, int minimumExecutionQuantity, int stopPrice, long requestId) {
         super(orderId, security, side, quantity, price, broker, shareholder, entryTime, status, minimumExecutionQuantity);
@@ -46,6 +49,14 @@ public class StopLimitOrder extends Order{
             return StopPrice > lastTransactionPrice;
     }
 
+    void markAsTriggered() {
+        triggered = true;
+    }
+
+    void clearTriggered() {
+        triggered = false;
+    }
+
     @Override
     public void updateFromRequest(EnterOrderRq updateOrderRq) {
         quantity = updateOrderRq.getQuantity();
@@ -54,8 +65,8 @@ public class StopLimitOrder extends Order{
     }
 
     @Override
-    public Order snapshot() {
-        return new StopLimitOrder(orderId, security, side, quantity, price, broker, shareholder, entryTime, OrderStatus.SNAPSHOT, minimumExecutionQuantity, StopPrice, requestId);
+    public Order snapshotAt(int quantity, int price, int peakSize) {
+        return new StopLimitOrder(orderId, security, side, quantity, price, broker, shareholder, getEntryTime(), OrderStatus.SNAPSHOT, minimumExecutionQuantity, StopPrice, requestId);
     }
 
 }
@@ -0,0 +1,18 @@
+package ir.ramtung.tinyme.domain.entity;
+
+public class TickLadderOrderBook extends PriceLevelOrderBook {
+    public static final int DEFAULT_WINDOW_SIZE = 4096;
+
+    public TickLadderOrderBook(int tickSize, int windowSize) {
+        super(new PriceLadder(Side.BUY, tickSize, windowSize), new PriceLadder(Side.SELL, tickSize, windowSize));
+    }
+
+    public TickLadderOrderBook(int tickSize) {
+        this(tickSize, DEFAULT_WINDOW_SIZE);
+    }
+
+    @Override
+    public OrderBookType getType() {
+        return OrderBookType.TICK_LADDER;
+    }
+}
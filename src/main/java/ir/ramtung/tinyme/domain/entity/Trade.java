@@ -1,34 +1,92 @@
 package ir.ramtung.tinyme.domain.entity;
 
-import lombok.Builder;
-import lombok.EqualsAndHashCode;
 import lombok.Getter;
-import lombok.ToString;
 
-@Builder
+import java.util.Objects;
+
 @Getter
-@EqualsAndHashCode
-@ToString
 public class Trade {
     Security security;
     private int price;
     private int quantity;
+    @Getter(lombok.AccessLevel.NONE)
+    private final Order buyOrder;
+    @Getter(lombok.AccessLevel.NONE)
+    private final Order sellOrder;
+    @Getter(lombok.AccessLevel.NONE)
+    private final int buyQuantity;
+    @Getter(lombok.AccessLevel.NONE)
+    private final int sellQuantity;
+    @Getter(lombok.AccessLevel.NONE)
+    private final int buyPrice;
+    @Getter(lombok.AccessLevel.NONE)
+    private final int sellPrice;
+    @Getter(lombok.AccessLevel.NONE)
+    private final int buyPeakSize;
+    @Getter(lombok.AccessLevel.NONE)
+    private final int sellPeakSize;
+    @Getter(lombok.AccessLevel.NONE)
     private Order buy;
+    @Getter(lombok.AccessLevel.NONE)
     private Order sell;
 
     public Trade(Security security, int price, int quantity, Order order1, Order order2) {
         this.security = security;
         this.price = price;
         this.quantity = quantity;
-        Order snapshot1 = order1.snapshot();
-        Order snapshot2 = order2.snapshot();
         if (order1.getSide() == Side.BUY) {
-            this.buy = snapshot1;
-            this.sell = snapshot2;
+            this.buyOrder = order1;
+            this.sellOrder = order2;
         } else {
-            this.buy = snapshot2;
-            this.sell = snapshot1;
+            this.buyOrder = order2;
+            this.sellOrder = order1;
         }
+        this.buyQuantity = buyOrder.getTotalQuantity();
+        this.sellQuantity = sellOrder.getTotalQuantity();
+        this.buyPrice = buyOrder.getPrice();
+        this.sellPrice = sellOrder.getPrice();
+        this.buyPeakSize = peakSizeOf(buyOrder);
+        this.sellPeakSize = peakSizeOf(sellOrder);
+    }
+
+    private static int peakSizeOf(Order order) {
+        return order instanceof IcebergOrder icebergOrder ? icebergOrder.getPeakSize() : 0;
+    }
+
+    public Order getBuy() {
+        if (buy == null)
+            buy = buyOrder.snapshotAt(buyQuantity, buyPrice, buyPeakSize);
+        return buy;
+    }
+
+    public Order getSell() {
+        if (sell == null)
+            sell = sellOrder.snapshotAt(sellQuantity, sellPrice, sellPeakSize);
+        return sell;
+    }
+
+    public long getBuyOrderId() {
+        return buyOrder.getOrderId();
+    }
+
+    public long getSellOrderId() {
+        return sellOrder.getOrderId();
+    }
+
+    public Broker getBuyBroker() {
+        return buyOrder.getBroker();
+    }
+
+    public Broker getSellBroker() {
+        return sellOrder.getBroker();
+    }
+
+    public Shareholder getBuyShareholder() {
+        return buyOrder.getShareholder();
+    }
+
+    public Shareholder getSellShareholder() {
+        return sellOrder.getShareholder();
     }
 
     public long getTradedValue() {
@@ -36,15 +94,29 @@ public class Trade {
     }
 
     public void increaseSellersCredit() {
-        sell.getBroker().increaseCreditBy(getTradedValue());
+        getSellBroker().increaseCreditBy(getTradedValue());
     }
 
-    public void decreaseBuyersCredit() {
-        buy.getBroker().decreaseCreditBy(getTradedValue());
+    public boolean buyerHasEnoughCredit() {
+        return getBuyBroker().hasEnoughCredit(getTradedValue());
     }
 
-    public boolean buyerHasEnoughCredit() {
-        return buy.getBroker().hasEnoughCredit(getTradedValue());
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Trade trade)) return false;
+        return price == trade.price && quantity == trade.quantity && Objects.equals(security, trade.security)
+                && Objects.equals(getBuy(), trade.getBuy()) && Objects.equals(getSell(), trade.getSell());
     }
 
+    @Override
+    public int hashCode() {
+        return Objects.hash(security, price, quantity, getBuyOrderId(), getSellOrderId());
+    }
+
+    @Override
+    public String toString() {
+        return "Trade(security=" + security + ", price=" + price + ", quantity=" + quantity
+                + ", buy=" + getBuy() + ", sell=" + getSell() + ")";
+    }
 }
@@ -0,0 +1,50 @@
+package ir.ramtung.tinyme.domain.entity;
+
+import java.util.Comparator;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+class TreePriceLevels extends PriceLevels {
+    private final TreeMap<Integer, PriceLevel> levels;
+
+    TreePriceLevels(boolean ascending) {
+        super(ascending);
+        levels = ascending ? new TreeMap<>() : new TreeMap<>(Comparator.reverseOrder());
+    }
+
+    TreePriceLevels(Side side) {
+        this(side == Side.SELL);
+    }
+
+    @Override
+    boolean isEmpty() {
+        return levels.isEmpty();
+    }
+
+    @Override
+    PriceLevel best() {
+        var entry = levels.firstEntry();
+        return entry == null ? null : entry.getValue();
+    }
+
+    @Override
+    PriceLevel levelFor(int price) {
+        return levels.computeIfAbsent(price, PriceLevel::new);
+    }
+
+    @Override
+    void remove(PriceLevel level) {
+        levels.remove(level.getPrice(), level);
+    }
+
+    @Override
+    PriceLevel after(int price) {
+        var entry = levels.higherEntry(price);
+        return entry == null ? null : entry.getValue();
+    }
+
+    @Override
+    void forEach(Consumer<PriceLevel> action) {
+        levels.values().forEach(action);
+    }
+}
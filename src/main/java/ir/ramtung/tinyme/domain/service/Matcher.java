@@ -3,12 +3,116 @@ package ir.ramtung.tinyme.domain.service;
 import ir.ramtung.tinyme.domain.entity.*;
 import org.springframework.stereotype.Service;
 
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.LinkedList;
-import java.util.ListIterator;
 
 @Service
 public class Matcher {
+    private final ThreadLocal<ReplenishQueue> replenishQueue = ThreadLocal.withInitial(ReplenishQueue::new);
+
+    public MatchPlan plan(Order newOrder) {
+        return plan(newOrder, 0);
+    }
+
+    public MatchPlan plan(Order newOrder, long creditAllowance) {
+        return plan(newOrder, creditAllowance, true);
+    }
+
+    public MatchPlan plan(Security security, Side side, int price, int quantity, Broker broker, int minimumExecutionQuantity) {
+        return plan(security, side, price, quantity, broker, minimumExecutionQuantity, 0, true);
+    }
+
+    private MatchPlan plan(Order newOrder, long creditAllowance, boolean queuesRemainder) {
+        return plan(newOrder.getSecurity(), newOrder.getSide(), newOrder.getPrice(), newOrder.getQuantity(), newOrder.getBroker(),
+                newOrder.isNew() ? newOrder.getMinimumExecutionQuantity() : 0, creditAllowance, queuesRemainder);
+    }
+
+    private MatchPlan plan(Security security, Side side, int limitPrice, int quantity, Broker newOrderBroker,
+                           int minimumExecutionQuantity, long creditAllowance, boolean queuesRemainder) {
+        Broker buyer = side == Side.BUY ? newOrderBroker : null;
+        long initialCredit = buyer == null ? 0 : buyer.getCredit() + creditAllowance;
+        long availableCredit = initialCredit;
+        int remaining = quantity;
+        int fillCount = 0;
+        long tradedValue = 0;
+
+        Iterator<Order> queue = security.getOrderBook().ordersInPriority(side.opposite());
+        Order next = queue.hasNext() ? queue.next() : null;
+        ReplenishQueue requeued = replenishQueue.get();
+        requeued.clear();
+        while (remaining > 0) {
+            int price;
+            Broker broker;
+            int peakSize;
+            int displayed;
+            int total;
+            if (next != null && (requeued.isEmpty() || next.getPrice() == requeued.firstPrice())) {
+                price = next.getPrice();
+                broker = next.getBroker();
+                peakSize = next instanceof IcebergOrder icebergOrder ? icebergOrder.getPeakSize() : 0;
+                displayed = next.getQuantity();
+                total = next.getTotalQuantity();
+                next = queue.hasNext() ? queue.next() : null;
+            } else if (!requeued.isEmpty()) {
+                price = requeued.firstPrice();
+                broker = requeued.firstBroker();
+                peakSize = requeued.firstPeakSize();
+                total = requeued.firstQuantity();
+                displayed = Math.min(total, peakSize);
+                requeued.removeFirst();
+            } else
+                break;
+            if (side == Side.BUY ? limitPrice < price : limitPrice > price)
+                break;
+
+            int fillQuantity = Math.min(remaining, displayed);
+            long value = (long) price * fillQuantity;
+            if (buyer != null) {
+                if (availableCredit < value) {
+                    requeued.clear();
+                    return MatchPlan.withoutFills(MatchingOutcome.NOT_ENOUGH_CREDIT, quantity);
+                }
+                if (broker != buyer)
+                    availableCredit -= value;
+            }
+            fillCount++;
+            tradedValue += value;
+            remaining -= fillQuantity;
+            if (peakSize != 0 && fillQuantity == displayed && total > displayed)
+                requeued.addLast(price, broker, peakSize, total - displayed);
+        }
+        requeued.clear();
+
+        int tradedQuantity = quantity - remaining;
+        if (queuesRemainder && remaining > 0) {
+            if (buyer != null) {
+                long remainderValue = (long) limitPrice * remaining;
+                if (availableCredit < remainderValue)
+                    return MatchPlan.withoutFills(MatchingOutcome.NOT_ENOUGH_CREDIT, quantity);
+                availableCredit -= remainderValue;
+            }
+            if (minimumExecutionQuantity > tradedQuantity)
+                return MatchPlan.withoutFills(MatchingOutcome.NOT_ENOUGH_INITIAL_TRANSACTION, quantity);
+        }
+        long creditChange = buyer == null ? tradedValue : availableCredit - initialCredit;
+        return new MatchPlan(MatchingOutcome.EXECUTED, fillCount, tradedQuantity, tradedValue, remaining, creditChange);
+    }
+
     public MatchResult match(Order newOrder) {
+        MatchPlan plan = plan(newOrder, 0, false);
+        if (plan.outcome() != MatchingOutcome.EXECUTED)
+            return MatchResult.rejected(plan.outcome());
+        if (!reserve(newOrder, plan, 0))
+            return MatchResult.notEnoughCredit();
+        return commit(newOrder);
+    }
+
+    private boolean reserve(Order order, MatchPlan plan, long heldCredit) {
+        return order.getSide() != Side.BUY || order.getBroker().tryReserve(-plan.creditChange() - heldCredit);
+    }
+
+    private MatchResult commit(Order newOrder) {
         OrderBook orderBook = newOrder.getSecurity().getOrderBook();
         LinkedList<Trade> trades = new LinkedList<>();
 
@@ -18,78 +122,192 @@ public class Matcher {
                 break;
 
             Trade trade = new Trade(newOrder.getSecurity(), matchingOrder.getPrice(), Math.min(newOrder.getQuantity(), matchingOrder.getQuantity()), newOrder, matchingOrder);
-            if (newOrder.getSide() == Side.BUY) {
-                if (trade.buyerHasEnoughCredit())
-                    trade.decreaseBuyersCredit();
-                else {
-                    rollbackTrades(newOrder, trades);
-                    return MatchResult.notEnoughCredit();
-                }
-            }
-            trade.increaseSellersCredit();
+            if (newOrder.getSide() == Side.SELL || trade.getSellBroker() != newOrder.getBroker())
+                trade.increaseSellersCredit();
             trades.add(trade);
 
             if (newOrder.getQuantity() >= matchingOrder.getQuantity()) {
                 newOrder.decreaseQuantity(matchingOrder.getQuantity());
-                orderBook.removeFirst(matchingOrder.getSide());
-                if (matchingOrder instanceof IcebergOrder icebergOrder) {
-                    icebergOrder.decreaseQuantity(matchingOrder.getQuantity());
-                    icebergOrder.replenish();
-                    if (icebergOrder.getQuantity() > 0)
-                        orderBook.enqueue(icebergOrder);
-                }
+                removeOrReplenishFirst(orderBook, matchingOrder);
             } else {
-                matchingOrder.decreaseQuantity(newOrder.getQuantity());
+                orderBook.decreaseQuantity(matchingOrder, newOrder.getQuantity());
                 newOrder.makeQuantityZero();
             }
         }
         return MatchResult.executed(newOrder, trades);
     }
 
-    private void rollbackTrades(Order newOrder, LinkedList<Trade> trades) {
-        assert newOrder.getSide() == Side.BUY;
-        newOrder.getBroker().increaseCreditBy(trades.stream().mapToLong(Trade::getTradedValue).sum());
-        trades.forEach(trade -> trade.getSell().getBroker().decreaseCreditBy(trade.getTradedValue()));
+    public MatchResult execute(Order order) {
+        return execute(order, 0);
+    }
+
+    public MatchResult execute(Order order, long heldCredit) {
+        MatchPlan plan = plan(order, heldCredit);
+        if (plan.outcome() != MatchingOutcome.EXECUTED)
+            return MatchResult.rejected(plan.outcome());
+        if (!reserve(order, plan, heldCredit))
+            return MatchResult.notEnoughCredit();
 
-        ListIterator<Trade> it = trades.listIterator(trades.size());
-        while (it.hasPrevious()) {
-            newOrder.getSecurity().getOrderBook().restoreSellOrder(it.previous().getSell());
+        MatchResult result = commit(order);
+        if (result.remainder().getQuantity() > 0)
+            order.getSecurity().getOrderBook().enqueue(result.remainder());
+        if (!result.trades().isEmpty()) {
+            for (Trade trade : result.trades()) {
+                trade.getBuyShareholder().incPosition(trade.getSecurity(), trade.getQuantity());
+                trade.getSellShareholder().decPosition(trade.getSecurity(), trade.getQuantity());
+            }
         }
+        return result;
     }
 
-    public MatchResult execute(Order order) {
-        int initialQuantity = order.getQuantity();
-        MatchResult result = match(order);
-        if (result.outcome() == MatchingOutcome.NOT_ENOUGH_CREDIT)
-            return result;
-        if (result.outcome() == MatchingOutcome.NOT_ENOUGH_INITIAL_TRANSACTION)
-            return result;
-
-        if (result.remainder().getQuantity() > 0) {
-            if (order.getSide() == Side.BUY) {
-                if (!order.getBroker().hasEnoughCredit(order.getValue())) {
-                    rollbackTrades(order, result.trades());
-                    return MatchResult.notEnoughCredit();
-                }
+    public int equilibriumPrice(Security security) {
+        OrderBook orderBook = security.getOrderBook();
+        AuctionLevels buys = new AuctionLevels(orderBook.ordersInPriority(Side.BUY));
+        AuctionLevels sells = new AuctionLevels(orderBook.ordersInPriority(Side.SELL));
+        long demand = buys.total;
+        long supply = 0;
+        int bestPrice = 0;
+        long bestVolume = 0;
+        long bestImbalance = 0;
+        int buyIndex = buys.size - 1;
+        int sellIndex = 0;
+        while (buyIndex >= 0 || sellIndex < sells.size) {
+            int price;
+            if (sellIndex == sells.size || (buyIndex >= 0 && buys.prices[buyIndex] < sells.prices[sellIndex]))
+                price = buys.prices[buyIndex];
+            else
+                price = sells.prices[sellIndex];
+            while (sellIndex < sells.size && sells.prices[sellIndex] == price)
+                supply += sells.quantities[sellIndex++];
 
-                order.getBroker().decreaseCreditBy(order.getValue());
-            }
-            if (order.isNew() && order.getMinimumExecutionQuantity() > (initialQuantity - result.remainder().getQuantity())){
-                if (order.getSide() == Side.BUY){
-                    rollbackTrades(order, result.trades());
-                }
-                return MatchResult.notEnoughInitialTransaction();
+            long volume = Math.min(demand, supply);
+            long imbalance = Math.abs(demand - supply);
+            if (volume > bestVolume || (volume == bestVolume && volume > 0 && (imbalance < bestImbalance
+                    || (imbalance == bestImbalance && Math.abs(price - security.getLastTransactionPrice()) < Math.abs(bestPrice - security.getLastTransactionPrice()))))) {
+                bestPrice = price;
+                bestVolume = volume;
+                bestImbalance = imbalance;
             }
 
-            order.getSecurity().getOrderBook().enqueue(result.remainder());
+            while (buyIndex >= 0 && buys.prices[buyIndex] == price)
+                demand -= buys.quantities[buyIndex--];
         }
-        if (!result.trades().isEmpty()) {
-            for (Trade trade : result.trades()) {
-                trade.getBuy().getShareholder().incPosition(trade.getSecurity(), trade.getQuantity());
-                trade.getSell().getShareholder().decPosition(trade.getSecurity(), trade.getQuantity());
+        return bestPrice;
+    }
+
+    public MatchResult uncross(Security security) {
+        int price = equilibriumPrice(security);
+        LinkedList<Trade> trades = new LinkedList<>();
+        if (price == 0)
+            return MatchResult.executed(null, trades);
+
+        OrderBook orderBook = security.getOrderBook();
+        while (orderBook.hasOrderOfType(Side.BUY) && orderBook.hasOrderOfType(Side.SELL)) {
+            Order buy = orderBook.ordersInPriority(Side.BUY).next();
+            Order sell = orderBook.ordersInPriority(Side.SELL).next();
+            if (buy.getPrice() < price || sell.getPrice() > price)
+                break;
+
+            int quantity = Math.min(buy.getQuantity(), sell.getQuantity());
+            Trade trade = new Trade(security, price, quantity, buy, sell);
+            trade.getBuyBroker().release((long) (buy.getPrice() - price) * quantity);
+            trade.increaseSellersCredit();
+            trade.getBuyShareholder().incPosition(security, quantity);
+            trade.getSellShareholder().decPosition(security, quantity);
+            trades.add(trade);
+
+            consume(orderBook, buy, quantity);
+            consume(orderBook, sell, quantity);
+        }
+        return MatchResult.executed(null, trades);
+    }
+
+    private void consume(OrderBook orderBook, Order order, int quantity) {
+        if (quantity < order.getQuantity()) {
+            orderBook.decreaseQuantity(order, quantity);
+            return;
+        }
+        removeOrReplenishFirst(orderBook, order);
+    }
+
+    private void removeOrReplenishFirst(OrderBook orderBook, Order order) {
+        if (order instanceof IcebergOrder icebergOrder && icebergOrder.getTotalQuantity() > icebergOrder.getQuantity())
+            orderBook.replenishFirst(icebergOrder);
+        else
+            orderBook.removeFirst(order.getSide());
+    }
+
+    private static class ReplenishQueue {
+        private int[] prices = new int[16];
+        private Broker[] brokers = new Broker[16];
+        private int[] peakSizes = new int[16];
+        private int[] quantities = new int[16];
+        private int head;
+        private int tail;
+
+        boolean isEmpty() {
+            return head == tail;
+        }
+
+        int firstPrice() {
+            return prices[head];
+        }
+
+        Broker firstBroker() {
+            return brokers[head];
+        }
+
+        int firstPeakSize() {
+            return peakSizes[head];
+        }
+
+        int firstQuantity() {
+            return quantities[head];
+        }
+
+        void removeFirst() {
+            brokers[head++] = null;
+        }
+
+        void addLast(int price, Broker broker, int peakSize, int quantity) {
+            if (tail == prices.length) {
+                prices = Arrays.copyOf(prices, tail * 2);
+                brokers = Arrays.copyOf(brokers, tail * 2);
+                peakSizes = Arrays.copyOf(peakSizes, tail * 2);
+                quantities = Arrays.copyOf(quantities, tail * 2);
             }
+            prices[tail] = price;
+            brokers[tail] = broker;
+            peakSizes[tail] = peakSize;
+            quantities[tail++] = quantity;
+        }
+
+        void clear() {
+            Arrays.fill(brokers, head, tail, null);
+            head = 0;
+            tail = 0;
         }
-        return result;
     }
 
+    private static class AuctionLevels {
+        int[] prices = new int[16];
+        long[] quantities = new long[16];
+        int size;
+        long total;
+
+        AuctionLevels(Iterator<Order> orders) {
+            while (orders.hasNext()) {
+                Order order = orders.next();
+                if (size == 0 || prices[size - 1] != order.getPrice()) {
+                    if (size == prices.length) {
+                        prices = Arrays.copyOf(prices, size * 2);
+                        quantities = Arrays.copyOf(quantities, size * 2);
+                    }
+                    prices[size++] = order.getPrice();
+                }
+                quantities[size - 1] += order.getTotalQuantity();
+                total += order.getTotalQuantity();
+            }
+        }
+    }
 }
@@ -0,0 +1,65 @@
+package ir.ramtung.tinyme.domain.service;
+
+import ir.ramtung.tinyme.pipeline.PipelineStage;
+import ir.ramtung.tinyme.pipeline.WaitStrategy;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@Component
+public class MatchingShards {
+    private final PipelineStage<Runnable>[] shards;
+
+    public MatchingShards(int shardCount) {
+        this(shardCount, 1024, WaitStrategy.SLEEPING);
+    }
+
+    @Autowired
+    @SuppressWarnings("unchecked")
+    public MatchingShards(@Value("${matchingShards:0}") int shardCount,
+                          @Value("${matchingRingSize:1024}") int ringSize,
+                          @Value("${pipelineWaitStrategy:SLEEPING}") WaitStrategy waitStrategy) {
+        shards = new PipelineStage[Math.max(shardCount, 0)];
+        for (int i = 0; i < shards.length; i++)
+            shards[i] = new PipelineStage<>("matching-shard-" + i, ringSize, waitStrategy, Runnable::run);
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    public int shardOf(int securityIndex) {
+        return Math.floorMod(securityIndex, shards.length);
+    }
+
+    public int getQueueDepth(int shard) {
+        return shards[shard].getQueueDepth();
+    }
+
+    public void execute(int securityIndex, Runnable task) {
+        if (shards.length == 0) {
+            task.run();
+            return;
+        }
+        shards[shardOf(securityIndex)].submit(task);
+    }
+
+    public boolean tryExecute(int securityIndex, Runnable task) {
+        if (shards.length == 0) {
+            task.run();
+            return true;
+        }
+        return shards[shardOf(securityIndex)].trySubmit(task);
+    }
+
+    public boolean executeLater(int securityIndex, Runnable task) {
+        return shards.length > 0 && shards[shardOf(securityIndex)].offer(task);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        for (PipelineStage<Runnable> shard : shards)
+            shard.shutdown();
+    }
+}
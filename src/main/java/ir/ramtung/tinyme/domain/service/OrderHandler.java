@@ -12,35 +12,159 @@ import ir.ramtung.tinyme.messaging.request.OrderEntryType;
 import ir.ramtung.tinyme.repository.BrokerRepository;
 import ir.ramtung.tinyme.repository.SecurityRepository;
 import ir.ramtung.tinyme.repository.ShareholderRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 @Service
 public class OrderHandler {
+    private final Logger log = Logger.getLogger(this.getClass().getName());
     SecurityRepository securityRepository;
     BrokerRepository brokerRepository;
     ShareholderRepository shareholderRepository;
     EventPublisher eventPublisher;
     Matcher matcher;
+    MatchingShards matchingShards;
+    @Value("${stopCascadeBudget:1000}")
+    int stopCascadeBudget = 1000;
+    @Value("${responseEnvelope:false}")
+    boolean responseEnvelope = false;
 
     public OrderHandler(SecurityRepository securityRepository, BrokerRepository brokerRepository, ShareholderRepository shareholderRepository, EventPublisher eventPublisher, Matcher matcher) {
+        this(securityRepository, brokerRepository, shareholderRepository, eventPublisher, matcher, new MatchingShards(0));
+    }
+
+    @Autowired
+    public OrderHandler(SecurityRepository securityRepository, BrokerRepository brokerRepository, ShareholderRepository shareholderRepository, EventPublisher eventPublisher, Matcher matcher, MatchingShards matchingShards) {
         this.securityRepository = securityRepository;
         this.brokerRepository = brokerRepository;
         this.shareholderRepository = shareholderRepository;
         this.eventPublisher = eventPublisher;
         this.matcher = matcher;
+        this.matchingShards = matchingShards;
+    }
+
+    public RequestContext resolve(Object request) {
+        if (request instanceof EnterOrderRq enterOrderRq)
+            return new RequestContext(securityRepository.indexOf(enterOrderRq.getSecurityIsin()),
+                    brokerRepository.indexOf(enterOrderRq.getBrokerId()),
+                    shareholderRepository.indexOf(enterOrderRq.getShareholderId()));
+        if (request instanceof DeleteOrderRq deleteOrderRq)
+            return new RequestContext(securityRepository.indexOf(deleteOrderRq.getSecurityIsin()), -1, -1);
+        throw new IllegalArgumentException("Unsupported request type: " + request);
     }
 
     public void handleEnterOrder(EnterOrderRq enterOrderRq) {
+        handleEnterOrder(enterOrderRq, resolve(enterOrderRq));
+    }
+
+    public void handleEnterOrder(EnterOrderRq enterOrderRq, RequestContext context) {
+        Security security = securityRepository.findSecurityByIndex(context.securityIndex());
+        boolean cascadePending = hasPendingCascade(security);
+        List<Event> events = new ArrayList<>();
+        updating(security, () -> {
+            processEnterOrder(enterOrderRq, context, security, events);
+            if (!cascadePending)
+                runStopCascade(security, events);
+        });
+        publish(enterOrderRq.getRequestId(), events);
+        if (!cascadePending)
+            scheduleStopCascade(security);
+    }
+
+    public void handleDeleteOrder(DeleteOrderRq deleteOrderRq) {
+        handleDeleteOrder(deleteOrderRq, resolve(deleteOrderRq));
+    }
+
+    public void handleDeleteOrder(DeleteOrderRq deleteOrderRq, RequestContext context) {
+        Security security = securityRepository.findSecurityByIndex(context.securityIndex());
+        List<Event> events = new ArrayList<>();
+        updating(security, () -> processDeleteOrder(deleteOrderRq, security, events));
+        publish(deleteOrderRq.getRequestId(), events);
+    }
+
+    private void publish(long requestId, List<Event> events) {
+        if (responseEnvelope)
+            eventPublisher.publish(new EventEnvelope(requestId, events));
+        else
+            eventPublisher.publishAll(events);
+    }
+
+    public void handleBatch(List<?> requests) {
+        List<RequestContext> contexts = new ArrayList<>(requests.size());
+        for (Object request : requests)
+            contexts.add(resolve(request));
+        handleBatch(requests, contexts);
+    }
+
+    public void handleBatch(List<?> requests, List<RequestContext> contexts) {
+        LinkedHashMap<Integer, List<Integer>> requestsBySecurity = new LinkedHashMap<>();
+        for (int i = 0; i < requests.size(); i++)
+            requestsBySecurity.computeIfAbsent(contexts.get(i).securityIndex(), key -> new ArrayList<>()).add(i);
+
+        List<Event> events = new ArrayList<>();
+        List<Security> cascadesToSchedule = new ArrayList<>();
+        for (var entry : requestsBySecurity.entrySet()) {
+            Security security = securityRepository.findSecurityByIndex(entry.getKey());
+            if (security != null && !hasPendingCascade(security))
+                cascadesToSchedule.add(security);
+            updating(security, () -> {
+                for (int i : entry.getValue()) {
+                    Object request = requests.get(i);
+                    List<Event> requestEvents = responseEnvelope ? new ArrayList<>() : events;
+                    long requestId;
+                    try {
+                        if (request instanceof EnterOrderRq enterOrderRq) {
+                            requestId = enterOrderRq.getRequestId();
+                            boolean cascadePending = hasPendingCascade(security);
+                            processEnterOrder(enterOrderRq, contexts.get(i), security, requestEvents);
+                            if (!cascadePending)
+                                runStopCascade(security, requestEvents);
+                        }
+                        else {
+                            requestId = ((DeleteOrderRq) request).getRequestId();
+                            processDeleteOrder((DeleteOrderRq) request, security, requestEvents);
+                        }
+                    } catch (RuntimeException e) {
+                        log.log(Level.SEVERE, "Request in batch failed: " + request, e);
+                        continue;
+                    }
+                    if (responseEnvelope)
+                        events.add(new EventEnvelope(requestId, requestEvents));
+                }
+            });
+        }
+        eventPublisher.publishAll(events);
+        for (Security security : cascadesToSchedule)
+            scheduleStopCascade(security);
+    }
+
+    private void updating(Security security, Runnable update) {
+        if (security == null) {
+            update.run();
+            return;
+        }
+        long stamp = security.beginUpdate();
         try {
-            validateEnterOrderRq(enterOrderRq);
+            update.run();
+        } finally {
+            security.endUpdate(stamp);
+        }
+    }
 
-            Security security = securityRepository.findSecurityByIsin(enterOrderRq.getSecurityIsin());
-            Broker broker = brokerRepository.findBrokerById(enterOrderRq.getBrokerId());
-            Shareholder shareholder = shareholderRepository.findShareholderById(enterOrderRq.getShareholderId());
+    private void processEnterOrder(EnterOrderRq enterOrderRq, RequestContext context, Security security, List<Event> events) {
+        Broker broker = brokerRepository.findBrokerByIndex(context.brokerIndex());
+        Shareholder shareholder = shareholderRepository.findShareholderByIndex(context.shareholderIndex());
+        try {
+            validateEnterOrderRq(enterOrderRq, security, broker, shareholder);
 
             MatchResult matchResult;
             if (enterOrderRq.getRequestType() == OrderEntryType.NEW_ORDER)
@@ -49,58 +173,84 @@ public class OrderHandler {
                 matchResult = security.updateOrder(enterOrderRq, matcher);
 
             if (matchResult.outcome() == MatchingOutcome.NOT_ENOUGH_CREDIT) {
-                eventPublisher.publish(new OrderRejectedEvent(enterOrderRq.getRequestId(), enterOrderRq.getOrderId(), List.of(Message.BUYER_HAS_NOT_ENOUGH_CREDIT)));
+                events.add(new OrderRejectedEvent(enterOrderRq.getRequestId(), enterOrderRq.getOrderId(), List.of(Message.BUYER_HAS_NOT_ENOUGH_CREDIT)));
                 return;
             }
             if (matchResult.outcome() == MatchingOutcome.NOT_ENOUGH_POSITIONS) {
-                eventPublisher.publish(new OrderRejectedEvent(enterOrderRq.getRequestId(), enterOrderRq.getOrderId(), List.of(Message.SELLER_HAS_NOT_ENOUGH_POSITIONS)));
+                events.add(new OrderRejectedEvent(enterOrderRq.getRequestId(), enterOrderRq.getOrderId(), List.of(Message.SELLER_HAS_NOT_ENOUGH_POSITIONS)));
                 return;
             }
             if (matchResult.outcome() == MatchingOutcome.NOT_ENOUGH_INITIAL_TRANSACTION) {
-                eventPublisher.publish(new OrderRejectedEvent(enterOrderRq.getRequestId(), enterOrderRq.getOrderId(), List.of(Message.BROKER_HAS_NOT_ENOUGH_INITIAL_TRANSACTION)));
+                events.add(new OrderRejectedEvent(enterOrderRq.getRequestId(), enterOrderRq.getOrderId(), List.of(Message.BROKER_HAS_NOT_ENOUGH_INITIAL_TRANSACTION)));
                 return;
             }
             if (enterOrderRq.getRequestType() == OrderEntryType.NEW_ORDER) {
-                eventPublisher.publish(new OrderAcceptedEvent(enterOrderRq.getRequestId(), enterOrderRq.getOrderId()));
+                events.add(new OrderAcceptedEvent(enterOrderRq.getRequestId(), enterOrderRq.getOrderId()));
                 if (matchResult.outcome() != MatchingOutcome.QUEUED_AS_INACTIVE_ORDER && enterOrderRq.getStopPrice() != 0) {
-                    eventPublisher.publish(new OrderActivatedEvent(enterOrderRq.getRequestId(), enterOrderRq.getOrderId()));
+                    events.add(new OrderActivatedEvent(enterOrderRq.getRequestId(), enterOrderRq.getOrderId()));
                 }
             }
             else {
-                eventPublisher.publish(new OrderUpdatedEvent(enterOrderRq.getRequestId(), enterOrderRq.getOrderId()));
+                events.add(new OrderUpdatedEvent(enterOrderRq.getRequestId(), enterOrderRq.getOrderId()));
                 if ((enterOrderRq.getStopPrice() != 0) && (matchResult.remainder() != null)) {
-                    eventPublisher.publish(new OrderActivatedEvent(enterOrderRq.getRequestId(), enterOrderRq.getOrderId()));
+                    events.add(new OrderActivatedEvent(enterOrderRq.getRequestId(), enterOrderRq.getOrderId()));
                 }
             }
             if (!matchResult.trades().isEmpty()) {
-                eventPublisher.publish(new OrderExecutedEvent(enterOrderRq.getRequestId(), enterOrderRq.getOrderId(), matchResult.trades().stream().map(TradeDTO::new).collect(Collectors.toList())));
+                events.add(new OrderExecutedEvent(enterOrderRq.getRequestId(), enterOrderRq.getOrderId(), matchResult.trades().stream().map(TradeDTO::new).collect(Collectors.toList())));
                 security.checkExecutableOrders(matchResult);
-                LinkedList<MatchResult> results = security.runExecutableOrders(matcher);
-                for (MatchResult result : results) {
-                    StopLimitOrder executedOrder = (StopLimitOrder) result.remainder();
-                    eventPublisher.publish(new OrderActivatedEvent(executedOrder.getRequestId(), executedOrder.getOrderId()));
-                    if (!result.trades().isEmpty()){
-                        eventPublisher.publish(new OrderExecutedEvent(executedOrder.getRequestId(), executedOrder.getOrderId(), result.trades().stream().map(TradeDTO::new).collect(Collectors.toList())));
-                    }
-                }
             }
         } catch (InvalidRequestException ex) {
-            eventPublisher.publish(new OrderRejectedEvent(enterOrderRq.getRequestId(), enterOrderRq.getOrderId(), ex.getReasons()));
+            events.add(new OrderRejectedEvent(enterOrderRq.getRequestId(), enterOrderRq.getOrderId(), ex.getReasons()));
         }
     }
 
-    public void handleDeleteOrder(DeleteOrderRq deleteOrderRq) {
+    private boolean hasPendingCascade(Security security) {
+        return security != null && security.hasExecutableOrders();
+    }
+
+    private void runStopCascade(Security security, List<Event> events) {
+        if (security == null || !security.hasExecutableOrders())
+            return;
+        security.runExecutableOrders(matcher, stopCascadeBudget, (executedOrder, result) -> {
+            events.add(new OrderActivatedEvent(executedOrder.getRequestId(), executedOrder.getOrderId()));
+            if (result.outcome() == MatchingOutcome.NOT_ENOUGH_CREDIT)
+                events.add(new OrderRejectedEvent(executedOrder.getRequestId(), executedOrder.getOrderId(), List.of(Message.BUYER_HAS_NOT_ENOUGH_CREDIT)));
+            else if (!result.trades().isEmpty())
+                events.add(new OrderExecutedEvent(executedOrder.getRequestId(), executedOrder.getOrderId(), result.trades().stream().map(TradeDTO::new).collect(Collectors.toList())));
+        });
+    }
+
+    private void scheduleStopCascade(Security security) {
+        while (security != null && security.hasExecutableOrders()) {
+            if (matchingShards.executeLater(security.getIndex(), () -> continueStopCascade(security)))
+                return;
+            publishStopCascadeSlice(security);
+        }
+    }
+
+    private void continueStopCascade(Security security) {
+        publishStopCascadeSlice(security);
+        scheduleStopCascade(security);
+    }
+
+    private void publishStopCascadeSlice(Security security) {
+        List<Event> events = new ArrayList<>();
+        updating(security, () -> runStopCascade(security, events));
+        eventPublisher.publishAll(events);
+    }
+
+    private void processDeleteOrder(DeleteOrderRq deleteOrderRq, Security security, List<Event> events) {
         try {
-            validateDeleteOrderRq(deleteOrderRq);
-            Security security = securityRepository.findSecurityByIsin(deleteOrderRq.getSecurityIsin());
+            validateDeleteOrderRq(deleteOrderRq, security);
             security.deleteOrder(deleteOrderRq);
-            eventPublisher.publish(new OrderDeletedEvent(deleteOrderRq.getRequestId(), deleteOrderRq.getOrderId()));
+            events.add(new OrderDeletedEvent(deleteOrderRq.getRequestId(), deleteOrderRq.getOrderId()));
         } catch (InvalidRequestException ex) {
-            eventPublisher.publish(new OrderRejectedEvent(deleteOrderRq.getRequestId(), deleteOrderRq.getOrderId(), ex.getReasons()));
+            events.add(new OrderRejectedEvent(deleteOrderRq.getRequestId(), deleteOrderRq.getOrderId(), ex.getReasons()));
         }
     }
 
-    private void validateEnterOrderRq(EnterOrderRq enterOrderRq) throws InvalidRequestException {
+    private void validateEnterOrderRq(EnterOrderRq enterOrderRq, Security security, Broker broker, Shareholder shareholder) throws InvalidRequestException {
         List<String> errors = new LinkedList<>();
         if (enterOrderRq.getOrderId() <= 0)
             errors.add(Message.INVALID_ORDER_ID);
@@ -110,7 +260,6 @@ public class OrderHandler {
             errors.add(Message.ORDER_PRICE_NOT_POSITIVE);
         if (enterOrderRq.getStopPrice() < 0)
             errors.add(Message.ORDER_STOP_PRICE_NEGATIVE);
-        Security security = securityRepository.findSecurityByIsin(enterOrderRq.getSecurityIsin());
         if (security == null)
             errors.add(Message.UNKNOWN_SECURITY_ISIN);
         else {
@@ -119,9 +268,9 @@ public class OrderHandler {
             if (enterOrderRq.getPrice() % security.getTickSize() != 0)
                 errors.add(Message.PRICE_NOT_MULTIPLE_OF_TICK_SIZE);
         }
-        if (brokerRepository.findBrokerById(enterOrderRq.getBrokerId()) == null)
+        if (broker == null)
             errors.add(Message.UNKNOWN_BROKER_ID);
-        if (shareholderRepository.findShareholderById(enterOrderRq.getShareholderId()) == null)
+        if (shareholder == null)
             errors.add(Message.UNKNOWN_SHAREHOLDER_ID);
         if (enterOrderRq.getPeakSize() < 0 || enterOrderRq.getPeakSize() >= enterOrderRq.getQuantity())
             errors.add(Message.INVALID_PEAK_SIZE);
@@ -138,11 +287,11 @@ public class OrderHandler {
             throw new InvalidRequestException(errors);
     }
 
-    private void validateDeleteOrderRq(DeleteOrderRq deleteOrderRq) throws InvalidRequestException {
+    private void validateDeleteOrderRq(DeleteOrderRq deleteOrderRq, Security security) throws InvalidRequestException {
         List<String> errors = new LinkedList<>();
         if (deleteOrderRq.getOrderId() <= 0)
             errors.add(Message.INVALID_ORDER_ID);
-        if (securityRepository.findSecurityByIsin(deleteOrderRq.getSecurityIsin()) == null)
+        if (security == null)
             errors.add(Message.UNKNOWN_SECURITY_ISIN);
         if (!errors.isEmpty())
             throw new InvalidRequestException(errors);
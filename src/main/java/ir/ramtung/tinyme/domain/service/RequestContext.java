@@ -0,0 +1,4 @@
+package ir.ramtung.tinyme.domain.service;
+
+public record RequestContext(int securityIndex, int brokerIndex, int shareholderIndex) {
+}
@@ -0,0 +1,175 @@
+package ir.ramtung.tinyme.messaging;
+
+import ir.ramtung.tinyme.domain.service.MatchingShards;
+import ir.ramtung.tinyme.domain.service.OrderHandler;
+import ir.ramtung.tinyme.domain.service.RequestContext;
+import ir.ramtung.tinyme.messaging.request.DeleteOrderRq;
+import ir.ramtung.tinyme.messaging.request.EnterOrderRq;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.jms.Connection;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import jakarta.jms.MessageConsumer;
+import jakarta.jms.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.support.converter.MessageConverter;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+@Component
+@ConditionalOnProperty(name = "requestConsumer", havingValue = "batch")
+public class BatchRequestDispatcher {
+    private static final String TYPE_PROPERTY = "_type";
+    private final Logger log = Logger.getLogger(this.getClass().getName());
+    private final JmsTemplate jmsTemplate;
+    private final MessageConverter converter;
+    private final OrderHandler orderHandler;
+    private final MatchingShards matchingShards;
+    private final String requestQueue;
+    private final int batchSize;
+    private final long pollTimeoutMillis;
+    private final Set<String> requestTypes = Set.of(EnterOrderRq.class.getName(), DeleteOrderRq.class.getName());
+    private volatile boolean running;
+    private Thread consumerThread;
+
+    public BatchRequestDispatcher(JmsTemplate jmsTemplate, OrderHandler orderHandler, MatchingShards matchingShards,
+                                  @Value("${requestQueue}") String requestQueue,
+                                  @Value("${requestBatchSize:64}") int batchSize,
+                                  @Value("${requestPollTimeoutMillis:100}") long pollTimeoutMillis) {
+        this.jmsTemplate = jmsTemplate;
+        this.converter = jmsTemplate.getMessageConverter();
+        this.orderHandler = orderHandler;
+        this.matchingShards = matchingShards;
+        this.requestQueue = requestQueue;
+        this.batchSize = Math.max(batchSize, 1);
+        this.pollTimeoutMillis = pollTimeoutMillis;
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        consumerThread = new Thread(this::consume, "batch-request-dispatcher");
+        consumerThread.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (consumerThread != null)
+            consumerThread.join();
+    }
+
+    private void consume() {
+        while (running) {
+            try (Connection connection = jmsTemplate.getConnectionFactory().createConnection();
+                 Session session = connection.createSession(true, Session.SESSION_TRANSACTED);
+                 MessageConsumer consumer = session.createConsumer(session.createQueue(requestQueue))) {
+                connection.start();
+                List<Message> batch = new ArrayList<>(batchSize);
+                while (running) {
+                    Message message = consumer.receive(pollTimeoutMillis);
+                    if (message == null)
+                        continue;
+                    batch.add(message);
+                    while (batch.size() < batchSize && (message = consumer.receiveNoWait()) != null)
+                        batch.add(message);
+                    dispatch(batch);
+                    session.commit();
+                    batch.clear();
+                }
+            } catch (JMSException e) {
+                log.log(Level.WARNING, "Request consumer failed, reconnecting", e);
+                try {
+                    Thread.sleep(pollTimeoutMillis);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    void dispatch(List<Message> messages) {
+        List<Object> requests = new ArrayList<>(messages.size());
+        List<RequestContext> contexts = new ArrayList<>(messages.size());
+        LinkedHashMap<Integer, Batch> batchBySecurity = new LinkedHashMap<>();
+        for (Message message : messages) {
+            try {
+                if (!requestTypes.contains(message.getStringProperty(TYPE_PROPERTY))) {
+                    log.warning("Dropping request of unknown type " + message.getStringProperty(TYPE_PROPERTY));
+                    continue;
+                }
+                Object request = converter.fromMessage(message);
+                RequestContext context = orderHandler.resolve(request);
+                requests.add(request);
+                contexts.add(context);
+                batchBySecurity.computeIfAbsent(context.securityIndex(), key -> new Batch()).add(request, context);
+            } catch (JMSException | RuntimeException e) {
+                log.log(Level.WARNING, "Dropping request that cannot be read: " + message, e);
+            }
+        }
+        log.fine("Received batch of " + requests.size() + " requests");
+        if (requests.isEmpty())
+            return;
+        if (matchingShards.getShardCount() == 0) {
+            handle(requests, contexts);
+            return;
+        }
+        CountDownLatch handled = new CountDownLatch(batchBySecurity.size());
+        for (var entry : batchBySecurity.entrySet()) {
+            Batch batch = entry.getValue();
+            Runnable task = () -> {
+                try {
+                    handle(batch.requests, batch.contexts);
+                } finally {
+                    handled.countDown();
+                }
+            };
+            if (!matchingShards.tryExecute(entry.getKey(), task))
+                task.run();
+        }
+        awaitUninterruptibly(handled);
+    }
+
+    private void handle(List<Object> requests, List<RequestContext> contexts) {
+        try {
+            orderHandler.handleBatch(requests, contexts);
+        } catch (RuntimeException e) {
+            log.log(Level.SEVERE, "Handling a batch of " + requests.size() + " requests failed after it started, committing it anyway", e);
+        }
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    private static class Batch {
+        private final List<Object> requests = new ArrayList<>();
+        private final List<RequestContext> contexts = new ArrayList<>();
+
+        void add(Object request, RequestContext context) {
+            requests.add(request);
+            contexts.add(context);
+        }
+    }
+}
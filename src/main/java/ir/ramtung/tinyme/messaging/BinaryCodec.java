@@ -0,0 +1,231 @@
+package ir.ramtung.tinyme.messaging;
+
+import ir.ramtung.tinyme.domain.entity.Side;
+import ir.ramtung.tinyme.messaging.event.*;
+import ir.ramtung.tinyme.messaging.request.DeleteOrderRq;
+import ir.ramtung.tinyme.messaging.request.EnterOrderRq;
+import ir.ramtung.tinyme.messaging.request.OrderEntryType;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class BinaryCodec {
+    static final byte ENTER_ORDER_RQ = 1;
+    static final byte DELETE_ORDER_RQ = 2;
+    static final byte ORDER_ACCEPTED = 10;
+    static final byte ORDER_UPDATED = 11;
+    static final byte ORDER_DELETED = 12;
+    static final byte ORDER_ACTIVATED = 13;
+    static final byte ORDER_REJECTED = 14;
+    static final byte ORDER_EXECUTED = 15;
+    static final byte EVENT_ENVELOPE = 20;
+    private static final int NULL_LENGTH = 0xFF;
+    private static final long NULL_TIME = Long.MIN_VALUE;
+    private static final int MAX_CACHED_ISINS = 65_536;
+
+    private final ConcurrentHashMap<IsinKey, String> isins = new ConcurrentHashMap<>();
+
+    private record IsinKey(byte[] bytes) {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof IsinKey other && Arrays.equals(bytes, other.bytes);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(bytes);
+        }
+    }
+
+    public void encode(Object object, DataOutput out) throws IOException {
+        if (object instanceof EnterOrderRq rq) {
+            out.writeByte(ENTER_ORDER_RQ);
+            out.writeByte(rq.getRequestType().ordinal());
+            out.writeLong(rq.getRequestId());
+            writeIsin(rq.getSecurityIsin(), out);
+            out.writeLong(rq.getOrderId());
+            writeTime(rq.getEntryTime(), out);
+            out.writeByte(rq.getSide().ordinal());
+            out.writeInt(rq.getQuantity());
+            out.writeInt(rq.getPrice());
+            out.writeLong(rq.getBrokerId());
+            out.writeLong(rq.getShareholderId());
+            out.writeInt(rq.getPeakSize());
+            out.writeInt(rq.getMinimumExecutionQuantity());
+            out.writeInt(rq.getStopPrice());
+        } else if (object instanceof DeleteOrderRq rq) {
+            out.writeByte(DELETE_ORDER_RQ);
+            out.writeLong(rq.getRequestId());
+            writeIsin(rq.getSecurityIsin(), out);
+            out.writeByte(rq.getSide().ordinal());
+            out.writeLong(rq.getOrderId());
+            writeTime(rq.getEntryTime(), out);
+        } else if (object instanceof OrderAcceptedEvent event) {
+            writeOrderEvent(ORDER_ACCEPTED, event, event.getRequestId(), event.getOrderId(), out);
+        } else if (object instanceof OrderUpdatedEvent event) {
+            writeOrderEvent(ORDER_UPDATED, event, event.getRequestId(), event.getOrderId(), out);
+        } else if (object instanceof OrderDeletedEvent event) {
+            writeOrderEvent(ORDER_DELETED, event, event.getRequestId(), event.getOrderId(), out);
+        } else if (object instanceof OrderActivatedEvent event) {
+            writeOrderEvent(ORDER_ACTIVATED, event, event.getRequestId(), event.getOrderId(), out);
+        } else if (object instanceof OrderRejectedEvent event) {
+            writeOrderEvent(ORDER_REJECTED, event, event.getRequestId(), event.getOrderId(), out);
+            out.writeShort(event.getErrors().size());
+            for (String error : event.getErrors()) {
+                int code = MessageCodes.codeOf(error);
+                out.writeShort(code);
+                if (code == MessageCodes.UNCODED)
+                    out.writeUTF(error);
+            }
+        } else if (object instanceof OrderExecutedEvent event) {
+            writeOrderEvent(ORDER_EXECUTED, event, event.getRequestId(), event.getOrderId(), out);
+            out.writeInt(event.getTrades().size());
+            for (TradeDTO trade : event.getTrades()) {
+                writeIsin(trade.securityIsin(), out);
+                out.writeInt(trade.price());
+                out.writeInt(trade.quantity());
+                out.writeLong(trade.buyOrderId());
+                out.writeLong(trade.sellOrderId());
+            }
+        } else if (object instanceof EventEnvelope envelope) {
+            out.writeByte(EVENT_ENVELOPE);
+            writeTime(envelope.getTime(), out);
+            out.writeLong(envelope.getRequestId());
+            out.writeInt(envelope.getEvents().size());
+            for (Event event : envelope.getEvents())
+                encode(event, out);
+        } else
+            throw new IllegalArgumentException("Cannot encode " + object.getClass().getName());
+    }
+
+    public Object decode(DataInput in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case ENTER_ORDER_RQ -> {
+                EnterOrderRq rq = new EnterOrderRq();
+                rq.setRequestType(OrderEntryType.values()[in.readByte()]);
+                rq.setRequestId(in.readLong());
+                rq.setSecurityIsin(readIsin(in));
+                rq.setOrderId(in.readLong());
+                rq.setEntryTime(readTime(in));
+                rq.setSide(Side.values()[in.readByte()]);
+                rq.setQuantity(in.readInt());
+                rq.setPrice(in.readInt());
+                rq.setBrokerId(in.readLong());
+                rq.setShareholderId(in.readLong());
+                rq.setPeakSize(in.readInt());
+                rq.setMinimumExecutionQuantity(in.readInt());
+                rq.setStopPrice(in.readInt());
+                return rq;
+            }
+            case DELETE_ORDER_RQ -> {
+                DeleteOrderRq rq = new DeleteOrderRq();
+                rq.setRequestId(in.readLong());
+                rq.setSecurityIsin(readIsin(in));
+                rq.setSide(Side.values()[in.readByte()]);
+                rq.setOrderId(in.readLong());
+                rq.setEntryTime(readTime(in));
+                return rq;
+            }
+            case ORDER_ACCEPTED, ORDER_UPDATED, ORDER_DELETED, ORDER_ACTIVATED, ORDER_REJECTED, ORDER_EXECUTED -> {
+                LocalDateTime time = readTime(in);
+                long requestId = in.readLong();
+                long orderId = in.readLong();
+                Event event = switch (type) {
+                    case ORDER_ACCEPTED -> new OrderAcceptedEvent(requestId, orderId);
+                    case ORDER_UPDATED -> new OrderUpdatedEvent(requestId, orderId);
+                    case ORDER_DELETED -> new OrderDeletedEvent(requestId, orderId);
+                    case ORDER_ACTIVATED -> new OrderActivatedEvent(requestId, orderId);
+                    case ORDER_REJECTED -> new OrderRejectedEvent(requestId, orderId, readErrors(in));
+                    default -> new OrderExecutedEvent(requestId, orderId, readTrades(in));
+                };
+                event.setTime(time);
+                return event;
+            }
+            case EVENT_ENVELOPE -> {
+                LocalDateTime time = readTime(in);
+                long requestId = in.readLong();
+                int count = in.readInt();
+                List<Event> events = new ArrayList<>(count);
+                for (int i = 0; i < count; i++)
+                    events.add((Event) decode(in));
+                EventEnvelope envelope = new EventEnvelope(requestId, events);
+                envelope.setTime(time);
+                return envelope;
+            }
+            default -> throw new IllegalArgumentException("Unknown binary message type " + type);
+        }
+    }
+
+    private void writeOrderEvent(byte type, Event event, long requestId, long orderId, DataOutput out) throws IOException {
+        out.writeByte(type);
+        writeTime(event.getTime(), out);
+        out.writeLong(requestId);
+        out.writeLong(orderId);
+    }
+
+    private List<String> readErrors(DataInput in) throws IOException {
+        int count = in.readUnsignedShort();
+        List<String> errors = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int code = in.readUnsignedShort();
+            errors.add(code == MessageCodes.UNCODED ? in.readUTF() : MessageCodes.messageOf(code));
+        }
+        return errors;
+    }
+
+    private List<TradeDTO> readTrades(DataInput in) throws IOException {
+        int count = in.readInt();
+        List<TradeDTO> trades = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+            trades.add(new TradeDTO(readIsin(in), in.readInt(), in.readInt(), in.readLong(), in.readLong()));
+        return trades;
+    }
+
+    private static void writeIsin(String isin, DataOutput out) throws IOException {
+        if (isin == null) {
+            out.writeByte(NULL_LENGTH);
+            return;
+        }
+        byte[] bytes = isin.getBytes(StandardCharsets.US_ASCII);
+        if (bytes.length >= NULL_LENGTH)
+            throw new IllegalArgumentException("ISIN is too long: " + isin);
+        out.writeByte(bytes.length);
+        out.write(bytes);
+    }
+
+    private String readIsin(DataInput in) throws IOException {
+        int length = in.readUnsignedByte();
+        if (length == NULL_LENGTH)
+            return null;
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        if (isins.size() >= MAX_CACHED_ISINS)
+            return isins.getOrDefault(new IsinKey(bytes), new String(bytes, StandardCharsets.US_ASCII));
+        return isins.computeIfAbsent(new IsinKey(bytes), key -> new String(key.bytes(), StandardCharsets.US_ASCII));
+    }
+
+    private static void writeTime(LocalDateTime time, DataOutput out) throws IOException {
+        if (time == null) {
+            out.writeLong(NULL_TIME);
+            return;
+        }
+        out.writeLong(time.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(time.getNano());
+    }
+
+    private static LocalDateTime readTime(DataInput in) throws IOException {
+        long epochSecond = in.readLong();
+        if (epochSecond == NULL_TIME)
+            return null;
+        return LocalDateTime.ofEpochSecond(epochSecond, in.readInt(), ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,50 @@
+package ir.ramtung.tinyme.messaging;
+
+import jakarta.jms.BytesMessage;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import jakarta.jms.Session;
+import org.springframework.jms.support.converter.MessageConversionException;
+import org.springframework.jms.support.converter.MessageConverter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+public class BinaryMessageConverter implements MessageConverter {
+    private final BinaryCodec codec = new BinaryCodec();
+    private final String typeIdPropertyName;
+
+    public BinaryMessageConverter(String typeIdPropertyName) {
+        this.typeIdPropertyName = typeIdPropertyName;
+    }
+
+    @Override
+    public Message toMessage(Object object, Session session) throws JMSException, MessageConversionException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try {
+            codec.encode(object, new DataOutputStream(bytes));
+        } catch (IOException | IllegalArgumentException e) {
+            throw new MessageConversionException("Cannot encode " + object, e);
+        }
+        BytesMessage message = session.createBytesMessage();
+        message.writeBytes(bytes.toByteArray());
+        message.setStringProperty(typeIdPropertyName, object.getClass().getName());
+        return message;
+    }
+
+    @Override
+    public Object fromMessage(Message message) throws JMSException, MessageConversionException {
+        if (!(message instanceof BytesMessage bytesMessage))
+            throw new MessageConversionException("Expected a BytesMessage but got " + message.getClass().getName());
+        byte[] body = new byte[(int) bytesMessage.getBodyLength()];
+        bytesMessage.readBytes(body);
+        try {
+            return codec.decode(new DataInputStream(new ByteArrayInputStream(body)));
+        } catch (IOException | RuntimeException e) {
+            throw new MessageConversionException("Cannot decode binary message", e);
+        }
+    }
+}
@@ -1,25 +1,155 @@
 package ir.ramtung.tinyme.messaging;
 
 import ir.ramtung.tinyme.messaging.event.Event;
+import ir.ramtung.tinyme.pipeline.OverflowPolicy;
+import ir.ramtung.tinyme.pipeline.PipelineStage;
+import ir.ramtung.tinyme.pipeline.WaitStrategy;
+import jakarta.annotation.PreDestroy;
+import jakarta.jms.Destination;
+import jakarta.jms.MessageProducer;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jms.ResourceAllocationException;
+import org.springframework.jms.TransactionRolledBackException;
+import org.springframework.jms.UncategorizedJmsException;
 import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.support.converter.MessageConversionException;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 @Component
 public class EventPublisher {
+    private static final int SHUTDOWN_SEND_ATTEMPTS = 3;
+    private static final long MAX_RETRY_DELAY_MILLIS = 1000;
     private final Logger log = Logger.getLogger(this.getClass().getName());
     private final JmsTemplate jmsTemplate;
     @Value("${responseQueue}")
     private String responseQueue;
+    private final PipelineStage<List<? extends Event>> publishingStage;
+    private final JmsTemplate batchTemplate;
+    private final OverflowPolicy overflowPolicy;
+    private final int sendAttempts;
 
-    public EventPublisher(JmsTemplate jmsTemplate) {
+    public EventPublisher(JmsTemplate jmsTemplate,
+                          @Value("${publishingRingSize:0}") int ringSize,
+                          @Value("${publishingBatchSize:64}") int batchSize,
+                          @Value("${publishingLingerMicros:200}") long lingerMicros,
+                          @Value("${publishingOverflowPolicy:BLOCK}") OverflowPolicy overflowPolicy,
+                          @Value("${publishingSendAttempts:10}") int sendAttempts,
+                          @Value("${pipelineWaitStrategy:SLEEPING}") WaitStrategy waitStrategy) {
         this.jmsTemplate = jmsTemplate;
+        this.overflowPolicy = overflowPolicy;
+        this.sendAttempts = Math.max(sendAttempts, 1);
+        if (ringSize > 0) {
+            batchTemplate = new JmsTemplate(jmsTemplate.getConnectionFactory());
+            batchTemplate.setMessageConverter(jmsTemplate.getMessageConverter());
+            batchTemplate.setDestinationResolver(jmsTemplate.getDestinationResolver());
+            batchTemplate.setSessionTransacted(true);
+            publishingStage = new PipelineStage<>("event-publisher", ringSize, waitStrategy, batchSize,
+                    TimeUnit.MICROSECONDS.toNanos(lingerMicros), this::sendBatch);
+        } else {
+            batchTemplate = null;
+            publishingStage = null;
+        }
     }
 
     public void publish(Event event) {
+        if (publishingStage != null) {
+            enqueue(List.of(event));
+            return;
+        }
         log.info("Published : " + event);
         jmsTemplate.convertAndSend(responseQueue, event);
     }
+
+    public void publishAll(List<? extends Event> events) {
+        if (events.isEmpty())
+            return;
+        if (publishingStage != null)
+            enqueue(events);
+        else
+            send(jmsTemplate, List.of(events));
+    }
+
+    private void enqueue(List<? extends Event> events) {
+        boolean queued = overflowPolicy == OverflowPolicy.BLOCK ? publishingStage.trySubmit(events) : publishingStage.offer(events);
+        if (queued)
+            return;
+        publishingStage.awaitHandled();
+        send(jmsTemplate, List.of(events));
+    }
+
+    public int getQueueDepth() {
+        return publishingStage == null ? 0 : publishingStage.getQueueDepth();
+    }
+
+    public int getBufferCapacity() {
+        return publishingStage == null ? 0 : publishingStage.getCapacity();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (publishingStage != null)
+            publishingStage.shutdown();
+    }
+
+    private void sendBatch(List<List<? extends Event>> batch) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                send(batchTemplate, batch);
+                return;
+            } catch (RuntimeException e) {
+                int attempts = publishingStage.isRunning() ? sendAttempts : Math.min(sendAttempts, SHUTDOWN_SEND_ATTEMPTS);
+                if (!isTransient(e) || attempt >= attempts) {
+                    log.log(Level.SEVERE, "Dropping " + batch.size() + " responses after " + attempt + " failed attempts: " + batch, e);
+                    return;
+                }
+                log.log(Level.WARNING, "Sending " + batch.size() + " responses failed, attempt " + attempt, e);
+                backOff(attempt);
+            }
+        }
+    }
+
+    private static boolean isTransient(RuntimeException e) {
+        return e instanceof UncategorizedJmsException
+                || e instanceof ResourceAllocationException
+                || e instanceof TransactionRolledBackException
+                || e instanceof org.springframework.jms.IllegalStateException;
+    }
+
+    private static void backOff(int attempt) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(Math.min(MAX_RETRY_DELAY_MILLIS, 10L << Math.min(attempt, 10)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while retrying a response batch", e);
+        }
+    }
+
+    private void send(JmsTemplate template, List<? extends List<? extends Event>> batch) {
+        template.execute(session -> {
+            Destination destination = template.getDestinationResolver().resolveDestinationName(session, responseQueue, false);
+            try (MessageProducer producer = session.createProducer(destination)) {
+                for (List<? extends Event> events : batch) {
+                    for (Event event : events) {
+                        jakarta.jms.Message message;
+                        try {
+                            message = template.getMessageConverter().toMessage(event, session);
+                        } catch (MessageConversionException e) {
+                            log.log(Level.SEVERE, "Dropping response that cannot be converted: " + event, e);
+                            continue;
+                        }
+                        log.info("Published : " + event);
+                        producer.send(message);
+                    }
+                }
+            }
+            if (session.getTransacted())
+                session.commit();
+            return null;
+        }, true);
+    }
 }
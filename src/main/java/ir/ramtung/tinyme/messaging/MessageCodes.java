@@ -0,0 +1,45 @@
+package ir.ramtung.tinyme.messaging;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class MessageCodes {
+    public static final int UNCODED = 0;
+    private static final List<String> MESSAGES = List.of(
+            Message.INVALID_ORDER_ID,
+            Message.ORDER_QUANTITY_NOT_POSITIVE,
+            Message.ORDER_PRICE_NOT_POSITIVE,
+            Message.UNKNOWN_SECURITY_ISIN,
+            Message.ORDER_ID_NOT_FOUND,
+            Message.INVALID_PEAK_SIZE,
+            Message.CANNOT_SPECIFY_PEAK_SIZE_FOR_A_NON_ICEBERG_ORDER,
+            Message.UNKNOWN_BROKER_ID,
+            Message.UNKNOWN_SHAREHOLDER_ID,
+            Message.BUYER_HAS_NOT_ENOUGH_CREDIT,
+            Message.QUANTITY_NOT_MULTIPLE_OF_LOT_SIZE,
+            Message.PRICE_NOT_MULTIPLE_OF_TICK_SIZE,
+            Message.SELLER_HAS_NOT_ENOUGH_POSITIONS,
+            Message.CANNOT_CHANGE_MINIMUM_EXECUTION_QUANTITY,
+            Message.MINIMUM_EXECUTION_QUANTITY_NOT_POSITIVE,
+            Message.INVALID_MINIMUM_EXECUTION_QUANTITY,
+            Message.BROKER_HAS_NOT_ENOUGH_INITIAL_TRANSACTION,
+            Message.ORDER_STOP_PRICE_NEGATIVE,
+            Message.CANNOT_SPECIFY_MINIMUM_EXECUTION_QUANTITY_FOR_A_STOP_LIMIT_ORDER,
+            Message.ORDER_CANNOT_BE_BOTH_A_STOP_LIMIT_AND_AN_ICEBERG
+    );
+    private static final Map<String, Integer> CODES = new HashMap<>();
+
+    static {
+        for (int i = 0; i < MESSAGES.size(); i++)
+            CODES.put(MESSAGES.get(i), i + 1);
+    }
+
+    public static int codeOf(String message) {
+        return CODES.getOrDefault(message, UNCODED);
+    }
+
+    public static String messageOf(int code) {
+        return code > 0 && code <= MESSAGES.size() ? MESSAGES.get(code - 1) : null;
+    }
+}
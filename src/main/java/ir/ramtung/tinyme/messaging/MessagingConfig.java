@@ -1,5 +1,6 @@
 package ir.ramtung.tinyme.messaging;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.jms.support.converter.MappingJackson2MessageConverter;
@@ -9,7 +10,9 @@ import org.springframework.jms.support.converter.MessageType;
 @Configuration
 public class MessagingConfig {
     @Bean
-    public MessageConverter jacksonJmsMessageConverter() {
+    public MessageConverter jmsMessageConverter(@Value("${messageCodec:json}") String messageCodec) {
+        if (messageCodec.equalsIgnoreCase("binary"))
+            return new BinaryMessageConverter("_type");
         MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
         converter.setTargetType(MessageType.TEXT);
         converter.setTypeIdPropertyName("_type");
@@ -2,30 +2,65 @@ package ir.ramtung.tinyme.messaging;
 
 import ir.ramtung.tinyme.messaging.request.DeleteOrderRq;
 import ir.ramtung.tinyme.messaging.request.EnterOrderRq;
+import ir.ramtung.tinyme.domain.service.MatchingShards;
 import ir.ramtung.tinyme.domain.service.OrderHandler;
+import ir.ramtung.tinyme.domain.service.RequestContext;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.jms.annotation.JmsListener;
 import org.springframework.stereotype.Component;
 
+import java.util.concurrent.CountDownLatch;
 import java.util.logging.Logger;
 
 @Component
+@ConditionalOnProperty(name = "requestConsumer", havingValue = "single", matchIfMissing = true)
 public class RequestDispatcher {
     private final Logger log = Logger.getLogger(this.getClass().getName());
     private final OrderHandler orderHandler;
+    private final MatchingShards matchingShards;
 
-    public RequestDispatcher(OrderHandler orderHandler) {
+    public RequestDispatcher(OrderHandler orderHandler, MatchingShards matchingShards) {
         this.orderHandler = orderHandler;
+        this.matchingShards = matchingShards;
     }
 
     @JmsListener(destination = "${requestQueue}", selector = "_type='ir.ramtung.tinyme.messaging.request.EnterOrderRq'")
     public void receiveEnterOrderRq(EnterOrderRq enterOrderRq) {
         log.info("Received message: " + enterOrderRq);
-        orderHandler.handleEnterOrder(enterOrderRq);
+        RequestContext context = orderHandler.resolve(enterOrderRq);
+        executeAndWait(context.securityIndex(), () -> orderHandler.handleEnterOrder(enterOrderRq, context));
     }
 
     @JmsListener(destination = "${requestQueue}", selector = "_type='ir.ramtung.tinyme.messaging.request.DeleteOrderRq'")
     public void receiveDeleteOrderRq(DeleteOrderRq deleteOrderRq) {
         log.info("Received message: " + deleteOrderRq);
-        orderHandler.handleDeleteOrder(deleteOrderRq);
+        RequestContext context = orderHandler.resolve(deleteOrderRq);
+        executeAndWait(context.securityIndex(), () -> orderHandler.handleDeleteOrder(deleteOrderRq, context));
+    }
+
+    private void executeAndWait(int securityIndex, Runnable task) {
+        CountDownLatch handled = new CountDownLatch(1);
+        matchingShards.execute(securityIndex, () -> {
+            try {
+                task.run();
+            } finally {
+                handled.countDown();
+            }
+        });
+        awaitUninterruptibly(handled);
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
     }
 }
@@ -0,0 +1,6 @@
+package ir.ramtung.tinyme.pipeline;
+
+public enum OverflowPolicy {
+    BLOCK,
+    CALLER_RUNS
+}
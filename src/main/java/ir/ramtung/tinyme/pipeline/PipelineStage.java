@@ -0,0 +1,120 @@
+package ir.ramtung.tinyme.pipeline;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class PipelineStage<T> {
+    private final Logger log = Logger.getLogger(this.getClass().getName());
+    private final RingBuffer<T> ring;
+    private final WaitStrategy waitStrategy;
+    private final int batchSize;
+    private final long lingerNanos;
+    private final Consumer<List<T>> handler;
+    private final Thread thread;
+    private volatile boolean running = true;
+    private final AtomicInteger producers = new AtomicInteger();
+    private volatile long handled;
+
+    public PipelineStage(String name, int capacity, WaitStrategy waitStrategy, Consumer<T> handler) {
+        this(name, capacity, waitStrategy, 1, 0, batch -> batch.forEach(handler));
+    }
+
+    public PipelineStage(String name, int capacity, WaitStrategy waitStrategy, int batchSize, long lingerNanos, Consumer<List<T>> handler) {
+        this.ring = new RingBuffer<>(capacity);
+        this.waitStrategy = waitStrategy;
+        this.batchSize = Math.max(batchSize, 1);
+        this.lingerNanos = lingerNanos;
+        this.handler = handler;
+        this.thread = new Thread(this::run, name);
+        thread.start();
+    }
+
+    public void submit(T item) {
+        if (!trySubmit(item))
+            throw new IllegalStateException(thread.getName() + " is shut down");
+    }
+
+    public boolean trySubmit(T item) {
+        producers.incrementAndGet();
+        try {
+            if (!running)
+                return false;
+            int attempt = 0;
+            while (!ring.offer(item))
+                waitStrategy.idle(attempt++);
+            return true;
+        } finally {
+            producers.decrementAndGet();
+        }
+    }
+
+    public boolean offer(T item) {
+        producers.incrementAndGet();
+        try {
+            return running && ring.offer(item);
+        } finally {
+            producers.decrementAndGet();
+        }
+    }
+
+    public void awaitHandled() {
+        long target = ring.claimed();
+        int attempt = 0;
+        while (handled < target)
+            waitStrategy.idle(attempt++);
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public int getQueueDepth() {
+        return ring.size();
+    }
+
+    public int getCapacity() {
+        return ring.capacity();
+    }
+
+    public void shutdown() throws InterruptedException {
+        running = false;
+        thread.join();
+    }
+
+    private void run() {
+        List<T> batch = new ArrayList<>(batchSize);
+        long batchStart = 0;
+        int attempt = 0;
+        while (true) {
+            T item = ring.poll();
+            if (item != null) {
+                if (batch.isEmpty())
+                    batchStart = System.nanoTime();
+                batch.add(item);
+                attempt = 0;
+                if (batch.size() < batchSize)
+                    continue;
+            } else if (batch.isEmpty()) {
+                if (!running && producers.get() == 0 && ring.size() == 0)
+                    return;
+                waitStrategy.idle(attempt++);
+                continue;
+            } else if (running && System.nanoTime() - batchStart < lingerNanos) {
+                waitStrategy.idle(attempt++);
+                continue;
+            }
+            try {
+                handler.accept(batch);
+            } catch (RuntimeException e) {
+                log.log(Level.SEVERE, thread.getName() + " failed to handle " + batch, e);
+            } finally {
+                handled += batch.size();
+            }
+            batch.clear();
+        }
+    }
+}
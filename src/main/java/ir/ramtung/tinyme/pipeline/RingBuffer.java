@@ -0,0 +1,62 @@
+package ir.ramtung.tinyme.pipeline;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class RingBuffer<T> {
+    private final Object[] items;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+
+    public RingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        items = new Object[size];
+        sequences = new AtomicLongArray(size);
+        mask = size - 1;
+        for (int i = 0; i < size; i++)
+            sequences.set(i, i);
+    }
+
+    public boolean offer(T item) {
+        while (true) {
+            long position = tail.get();
+            int index = (int) position & mask;
+            long sequence = sequences.get(index);
+            if (sequence == position) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    items[index] = item;
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+            } else if (sequence < position)
+                return false;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public T poll() {
+        long position = head;
+        int index = (int) position & mask;
+        if (sequences.get(index) != position + 1)
+            return null;
+        T item = (T) items[index];
+        items[index] = null;
+        sequences.set(index, position + items.length);
+        head = position + 1;
+        return item;
+    }
+
+    public long claimed() {
+        return tail.get();
+    }
+
+    public int size() {
+        return (int) Math.max(tail.get() - head, 0);
+    }
+
+    public int capacity() {
+        return items.length;
+    }
+}
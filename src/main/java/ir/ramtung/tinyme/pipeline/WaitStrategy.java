@@ -0,0 +1,34 @@
+package ir.ramtung.tinyme.pipeline;
+
+import java.util.concurrent.locks.LockSupport;
+
+public enum WaitStrategy {
+    BUSY_SPIN {
+        @Override
+        void idle(int attempt) {
+            Thread.onSpinWait();
+        }
+    },
+    YIELDING {
+        @Override
+        void idle(int attempt) {
+            if (attempt < 100)
+                Thread.onSpinWait();
+            else
+                Thread.yield();
+        }
+    },
+    SLEEPING {
+        @Override
+        void idle(int attempt) {
+            if (attempt < 100)
+                Thread.onSpinWait();
+            else if (attempt < 200)
+                Thread.yield();
+            else
+                LockSupport.parkNanos(100_000);
+        }
+    };
+
+    abstract void idle(int attempt);
+}
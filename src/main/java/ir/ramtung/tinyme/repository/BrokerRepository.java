@@ -3,22 +3,35 @@ package ir.ramtung.tinyme.repository;
 import ir.ramtung.tinyme.domain.entity.Broker;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 
 @Component
 public class BrokerRepository {
-    private final HashMap<Long, Broker> brokerById = new HashMap<>();
+    private final HashMap<Long, Integer> indexById = new HashMap<>();
+    private final ArrayList<Broker> brokerByIndex = new ArrayList<>();
+    public int indexOf(long brokerId) {
+        return indexById.getOrDefault(brokerId, -1);
+    }
+    public Broker findBrokerByIndex(int index) {
+        return index >= 0 && index < brokerByIndex.size() ? brokerByIndex.get(index) : null;
+    }
     public Broker findBrokerById(long brokerId) {
-        return brokerById.get(brokerId);
+        return findBrokerByIndex(indexOf(brokerId));
     }
     public void addBroker(Broker broker) {
-        brokerById.put(broker.getBrokerId(), broker);
+        Integer index = indexById.putIfAbsent(broker.getBrokerId(), brokerByIndex.size());
+        if (index == null)
+            brokerByIndex.add(broker);
+        else
+            brokerByIndex.set(index, broker);
     }
 
     public void clear() {
-        brokerById.clear();
+        indexById.clear();
+        brokerByIndex.clear();
     }
     Iterable<? extends Broker> allBrokers() {
-        return brokerById.values();
+        return brokerByIndex;
     }
 }
@@ -3,6 +3,7 @@ package ir.ramtung.tinyme.repository;
 import com.opencsv.CSVReader;
 import com.opencsv.CSVReaderBuilder;
 import ir.ramtung.tinyme.domain.entity.*;
+import ir.ramtung.tinyme.domain.service.MatchingShards;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Value;
@@ -27,11 +28,13 @@ public class DataLoader {
     private final BrokerRepository brokerRepository;
     private final ShareholderRepository shareholderRepository;
     private final SecurityRepository securityRepository;
+    private final MatchingShards matchingShards;
 
-    public DataLoader(BrokerRepository brokerRepository, ShareholderRepository shareholderRepository, SecurityRepository securityRepository) {
+    public DataLoader(BrokerRepository brokerRepository, ShareholderRepository shareholderRepository, SecurityRepository securityRepository, MatchingShards matchingShards) {
         this.brokerRepository = brokerRepository;
         this.shareholderRepository = shareholderRepository;
         this.securityRepository = securityRepository;
+        this.matchingShards = matchingShards;
     }
 
     @Value("classpath:persistence/broker.csv")
@@ -44,6 +47,8 @@ public class DataLoader {
     private Resource positionCsvResource;
     @Value("classpath:persistence/orderbook.csv")
     private Resource orderBookCsvResource;
+    @Value("${orderBookType:PRICE_LEVEL}")
+    private OrderBookType defaultOrderBookType;
 
     @PostConstruct
     public void loadAll() throws Exception {
@@ -56,6 +61,7 @@ public class DataLoader {
 
     @PreDestroy
     public void saveAll() throws Exception {
+        matchingShards.shutdown();
         System.out.print("Saving persistent data ...");
         saveBrokers();
         saveShareholdersAndPositions();
@@ -102,11 +108,12 @@ public class DataLoader {
             try (CSVReader csvReader = new CSVReaderBuilder(reader).withSkipLines(1).build()) {
                 String[] line;
                 while ((line = csvReader.readNext()) != null) {
+                    int tickSize = Integer.parseInt(line[1]);
                     securityRepository.addSecurity(Security.builder()
                             .isin(line[0])
-                            .tickSize(Integer.parseInt(line[1]))
+                            .tickSize(tickSize)
                             .lotSize(Integer.parseInt(line[2]))
-                            .build());
+                            .orderBook(OrderBookType.parse(line.length > 3 ? line[3] : null, defaultOrderBookType).newOrderBook(tickSize)));
                 }
             }
         }
@@ -204,13 +211,16 @@ public class DataLoader {
                     joiner.add(String.valueOf(shareholder.getShareholderId()))
                             .add(shareholder.getName());
                     shareholderWriter.println(joiner);
-                    for (var entry : shareholder.getPositions().entrySet()) {
+                    shareholder.forEachPosition((securityIndex, position) -> {
+                        Security security = securityRepository.findSecurityByIndex(securityIndex);
+                        if (security == null)
+                            return;
                         StringJoiner posJoiner = new StringJoiner(",");
                         posJoiner.add(String.valueOf(shareholder.getShareholderId()))
-                                .add(entry.getKey().getIsin())
-                                .add(String.valueOf(entry.getValue()));
+                                .add(security.getIsin())
+                                .add(String.valueOf(position));
                         positionWriter.println(posJoiner);
-                    }
+                    });
                 }
             }
         }
@@ -219,14 +229,15 @@ public class DataLoader {
 
     private void saveSecuritiesAndOrderBooks() throws Exception {
         try (PrintWriter securityWriter = new PrintWriter(new FileWriter(securityCsvResource.getFile()))) {
-            securityWriter.println("isin,tickSize,lotSize");
+            securityWriter.println("isin,tickSize,lotSize,orderBookType");
             try (PrintWriter orderBookWriter = new PrintWriter(new FileWriter(orderBookCsvResource.getFile()))) {
                 orderBookWriter.println("orderId,isin,side,quantity,price,brokerId,shareholderId,entryTime,status,peakSize,displayedQuantity");
                 for (Security security : securityRepository.allSecurities()) {
                     StringJoiner joiner = new StringJoiner(",");
                     joiner.add(security.getIsin())
                             .add(String.valueOf(security.getTickSize()))
-                            .add(String.valueOf(security.getLotSize()));
+                            .add(String.valueOf(security.getLotSize()))
+                            .add(security.getOrderBook().getType().toString());
                     securityWriter.println(joiner);
                     for (Order order : security.getOrderBook().getBuyQueue())
                         orderBookWriter.println(getCSVString(order));
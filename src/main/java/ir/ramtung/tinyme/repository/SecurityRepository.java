@@ -3,21 +3,38 @@ package ir.ramtung.tinyme.repository;
 import ir.ramtung.tinyme.domain.entity.Security;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 
 @Component
 public class SecurityRepository {
     private final HashMap<String, Security> securityByIsin = new HashMap<>();
+    private final ArrayList<Security> securityByIndex = new ArrayList<>();
+    public int indexOf(String isin) {
+        Security security = securityByIsin.get(isin);
+        return security == null ? -1 : security.getIndex();
+    }
+
     public Security findSecurityByIsin(String isin) {
         return securityByIsin.get(isin);
     }
 
-    public void addSecurity(Security security) {
-        securityByIsin.put(security.getIsin(), security);
+    public Security findSecurityByIndex(int index) {
+        return index >= 0 && index < securityByIndex.size() ? securityByIndex.get(index) : null;
+    }
+
+    public Security addSecurity(Security.SecurityBuilder securityBuilder) {
+        Security security = securityBuilder.index(securityByIndex.size()).build();
+        Security previous = securityByIsin.put(security.getIsin(), security);
+        if (previous != null)
+            securityByIndex.set(previous.getIndex(), null);
+        securityByIndex.add(security);
+        return security;
     }
 
     public void clear() {
         securityByIsin.clear();
+        securityByIndex.clear();
     }
 
     Iterable<? extends Security> allSecurities() {
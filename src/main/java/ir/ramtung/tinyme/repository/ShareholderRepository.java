@@ -3,23 +3,36 @@ package ir.ramtung.tinyme.repository;
 import ir.ramtung.tinyme.domain.entity.Shareholder;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 
 @Component
 public class ShareholderRepository {
-    private final HashMap<Long, Shareholder> shareholderById = new HashMap<>();
+    private final HashMap<Long, Integer> indexById = new HashMap<>();
+    private final ArrayList<Shareholder> shareholderByIndex = new ArrayList<>();
+    public int indexOf(long shareholderId) {
+        return indexById.getOrDefault(shareholderId, -1);
+    }
+    public Shareholder findShareholderByIndex(int index) {
+        return index >= 0 && index < shareholderByIndex.size() ? shareholderByIndex.get(index) : null;
+    }
     public Shareholder findShareholderById(long shareholderId) {
-        return shareholderById.get(shareholderId);
+        return findShareholderByIndex(indexOf(shareholderId));
     }
     public void addShareholder(Shareholder shareholder) {
-        shareholderById.put(shareholder.getShareholderId(), shareholder);
+        Integer index = indexById.putIfAbsent(shareholder.getShareholderId(), shareholderByIndex.size());
+        if (index == null)
+            shareholderByIndex.add(shareholder);
+        else
+            shareholderByIndex.set(index, shareholder);
     }
 
     public void clear() {
-        shareholderById.clear();
+        indexById.clear();
+        shareholderByIndex.clear();
     }
 
     Iterable<? extends Shareholder> allShareholders() {
-        return shareholderById.values();
+        return shareholderByIndex;
     }
 }
@@ -0,0 +1,73 @@
+package ir.ramtung.tinyme.benchmark;
+
+import ir.ramtung.tinyme.domain.entity.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderBookBenchmark {
+    private static final int BEST_BUY_PRICE = 100_000;
+    private static final int BEST_SELL_PRICE = BEST_BUY_PRICE + 10;
+
+    @Param({"LINEAR", "PRICE_LEVEL", "TICK_LADDER"})
+    public OrderBookType bookType;
+    @Param({"1000", "10000"})
+    public int depth;
+    @Param({"10"})
+    public int ordersPerLevel;
+
+    private OrderBook orderBook;
+    private Order deepBuy;
+    private Order aggressiveSell;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        Security security = Security.builder().isin("BENCH").tickSize(10).build();
+        Broker broker = Broker.builder().brokerId(1).credit(Long.MAX_VALUE / 2).build();
+        Shareholder shareholder = Shareholder.builder().shareholderId(1).build();
+        orderBook = bookType.newOrderBook(security.getTickSize());
+        long orderId = 1;
+        for (int i = 0; i < depth; i++) {
+            int level = i / ordersPerLevel;
+            orderBook.enqueue(new Order(orderId++, security, Side.BUY, 100, BEST_BUY_PRICE - 10 * level, broker, shareholder, 0));
+            orderBook.enqueue(new Order(orderId++, security, Side.SELL, 100, BEST_SELL_PRICE + 10 * level, broker, shareholder, 0));
+        }
+        int worstLevel = (depth - 1) / ordersPerLevel;
+        deepBuy = new Order(orderId++, security, Side.BUY, 100, BEST_BUY_PRICE - 10 * worstLevel, broker, shareholder, 0);
+        aggressiveSell = new Order(orderId, security, Side.SELL, 100, BEST_BUY_PRICE - 10 * worstLevel, broker, shareholder, 0);
+    }
+
+    @Benchmark
+    public boolean enqueueAndCancelFarFromTouch() {
+        orderBook.enqueue(deepBuy);
+        return orderBook.removeByOrderId(Side.BUY, deepBuy.getOrderId());
+    }
+
+    @Benchmark
+    public Order findFarFromTouch() {
+        return orderBook.findByOrderId(Side.SELL, 2L * depth);
+    }
+
+    @Benchmark
+    public Order removeFirstAndPutBack() {
+        Order first = orderBook.matchWithFirst(aggressiveSell);
+        orderBook.removeFirst(Side.BUY);
+        orderBook.putBack(first);
+        return first;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(OrderBookBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
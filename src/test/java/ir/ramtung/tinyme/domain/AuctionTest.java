@@ -0,0 +1,83 @@
+package ir.ramtung.tinyme.domain;
+
+import ir.ramtung.tinyme.domain.entity.*;
+import ir.ramtung.tinyme.domain.service.Matcher;
+import ir.ramtung.tinyme.messaging.exception.InvalidRequestException;
+import ir.ramtung.tinyme.messaging.request.EnterOrderRq;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AuctionTest {
+    private Security security;
+    private Broker buyerBroker;
+    private Broker sellerBroker;
+    private Shareholder buyer;
+    private Shareholder seller;
+    private final Matcher matcher = new Matcher();
+
+    @BeforeEach
+    void setup() throws InvalidRequestException {
+        security = Security.builder().index(0).isin("ABC").orderBook(new PriceLevelOrderBook()).build();
+        buyerBroker = Broker.builder().brokerId(1).credit(1_000_000L).build();
+        sellerBroker = Broker.builder().brokerId(2).credit(1_000_000L).build();
+        buyer = Shareholder.builder().shareholderId(1).build();
+        seller = Shareholder.builder().shareholderId(2).build();
+        seller.incPosition(security, 1_000);
+        security.startAuction();
+        enter(1, Side.BUY, 100, 110);
+        enter(2, Side.BUY, 200, 105);
+        enter(3, Side.BUY, 100, 100);
+        enter(4, Side.SELL, 150, 95);
+        enter(5, Side.SELL, 100, 100);
+        enter(6, Side.SELL, 200, 108);
+    }
+
+    private MatchResult enter(long orderId, Side side, int quantity, int price) throws InvalidRequestException {
+        Broker broker = side == Side.BUY ? buyerBroker : sellerBroker;
+        Shareholder shareholder = side == Side.BUY ? buyer : seller;
+        EnterOrderRq enterOrderRq = EnterOrderRq.createNewOrderRq(orderId, "ABC", orderId, LocalDateTime.now(), side, quantity, price,
+                broker.getBrokerId(), shareholder.getShareholderId(), 0, 0, 0);
+        return security.newOrder(enterOrderRq, broker, shareholder, matcher);
+    }
+
+    @Test
+    void orders_are_queued_without_matching_during_the_auction() {
+        assertThat(security.getOrderBook().getBuyQueue()).extracting(Order::getOrderId).containsExactly(1L, 2L, 3L);
+        assertThat(security.getOrderBook().getSellQueue()).extracting(Order::getOrderId).containsExactly(4L, 5L, 6L);
+        assertThat(buyerBroker.getCredit()).isEqualTo(1_000_000L - 42_000);
+    }
+
+    @Test
+    void equilibrium_price_maximizes_volume_then_minimizes_imbalance() {
+        assertThat(matcher.equilibriumPrice(security)).isEqualTo(105);
+    }
+
+    @Test
+    void uncrossing_executes_all_crossing_orders_at_the_equilibrium_price() {
+        MatchResult result = security.endAuction(matcher);
+
+        assertThat(result.trades()).extracting(Trade::getPrice).containsOnly(105);
+        assertThat(result.trades()).extracting(Trade::getQuantity).containsExactly(100, 50, 100);
+        assertThat(security.getOrderBook().getBuyQueue()).extracting(Order::getQuantity).containsExactly(50, 100);
+        assertThat(security.getOrderBook().getSellQueue()).extracting(Order::getOrderId).containsExactly(6L);
+        assertThat(buyerBroker.getCredit()).isEqualTo(1_000_000L - 42_000 + 500);
+        assertThat(sellerBroker.getCredit()).isEqualTo(1_000_000L + 250 * 105);
+        assertThat(buyer.hasEnoughPositionsOn(security, 250)).isTrue();
+        assertThat(seller.hasEnoughPositionsOn(security, 751)).isFalse();
+        assertThat(security.getLastTransactionPrice()).isEqualTo(105);
+        assertThat(security.getMatchingState()).isEqualTo(MatchingState.CONTINUOUS);
+    }
+
+    @Test
+    void nothing_trades_when_the_book_does_not_cross() {
+        security.getOrderBook().removeByOrderId(Side.SELL, 4);
+        security.getOrderBook().removeByOrderId(Side.SELL, 5);
+        security.getOrderBook().removeByOrderId(Side.BUY, 1);
+        assertThat(security.endAuction(matcher).trades()).isEmpty();
+        assertThat(security.getOrderBook().getBuyQueue()).hasSize(2);
+    }
+}
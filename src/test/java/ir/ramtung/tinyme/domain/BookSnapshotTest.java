@@ -0,0 +1,104 @@
+package ir.ramtung.tinyme.domain;
+
+import ir.ramtung.tinyme.domain.entity.*;
+import ir.ramtung.tinyme.domain.service.Matcher;
+import org.junit.jupiter.api.Test;
+
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+
+class BookSnapshotTest {
+    private final Broker broker = Broker.builder().credit(100_000_000L).build();
+    private final Shareholder shareholder = Shareholder.builder().build();
+
+    @Test
+    void snapshot_copies_both_books_and_is_detached_from_them() {
+        Security security = Security.builder().isin("ABC").build();
+        Order buy = new Order(1, security, Side.BUY, 100, 15000, broker, shareholder, 0);
+        long stamp = security.beginUpdate();
+        security.getOrderBook().enqueue(buy);
+        security.getOrderBook().enqueue(new Order(2, security, Side.SELL, 50, 15100, broker, shareholder, 0));
+        security.getInactiveOrderBook().enqueue(new StopLimitOrder(3, security, Side.BUY, 10, 15200, broker, shareholder, 0, 15150, 1));
+        security.endUpdate(stamp);
+
+        BookSnapshot snapshot = security.snapshot();
+        buy.decreaseQuantity(40);
+
+        assertThat(snapshot.version()).isEqualTo(1);
+        assertThat(snapshot.buyOrders()).extracting(Order::getQuantity).containsExactly(100);
+        assertThat(snapshot.sellOrders()).extracting(Order::getOrderId).containsExactly(2L);
+        assertThat(snapshot.inactiveBuyOrders()).extracting(Order::getOrderId).containsExactly(3L);
+        assertThat(snapshot.inactiveSellOrders()).isEmpty();
+    }
+
+    @Test
+    void snapshot_keeps_the_displayed_quantity_of_an_iceberg() {
+        Security security = Security.builder().isin("ABC").build();
+        IcebergOrder iceberg = new IcebergOrder(1, security, Side.SELL, 100, 15000, broker, shareholder, 10, 0);
+        security.getOrderBook().enqueue(iceberg);
+        iceberg.decreaseQuantity(4);
+
+        BookSnapshot snapshot = security.snapshot();
+
+        assertThat(snapshot.sellOrders()).singleElement().satisfies(order -> {
+            assertThat(((IcebergOrder) order).getDisplayedQuantity()).isEqualTo(6);
+            assertThat(order.getTotalQuantity()).isEqualTo(96);
+        });
+    }
+
+    @Test
+    void auction_transitions_are_versioned_updates() {
+        Security security = Security.builder().isin("ABC").build();
+        security.startAuction();
+        assertThat(security.snapshot().version()).isEqualTo(1);
+        security.endAuction(new Matcher());
+        assertThat(security.snapshot().version()).isEqualTo(2);
+    }
+
+    @Test
+    void failures_of_a_consistent_read_are_not_swallowed() {
+        Security security = Security.builder().isin("ABC").orderBook(new OrderBook() {
+            @Override
+            public Iterator<Order> ordersInPriority(Side side) {
+                throw new IllegalStateException("broken book");
+            }
+        }).build();
+
+        assertThatIllegalStateException().isThrownBy(security::snapshot).withMessage("broken book");
+    }
+
+    @Test
+    void concurrent_readers_only_see_complete_updates() throws InterruptedException {
+        Security security = Security.builder().isin("ABC").build();
+        OrderBook orderBook = security.getOrderBook();
+        orderBook.enqueue(new Order(0, security, Side.BUY, 10, 15000, broker, shareholder, 0));
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger inconsistent = new AtomicInteger();
+        AtomicInteger reads = new AtomicInteger();
+        Thread reader = new Thread(() -> {
+            while (running.get()) {
+                BookSnapshot snapshot = security.snapshot();
+                if (snapshot.buyOrders().size() != 1)
+                    inconsistent.incrementAndGet();
+                reads.incrementAndGet();
+            }
+        });
+        reader.start();
+        for (long orderId = 1; orderId <= 20_000; orderId++) {
+            long stamp = security.beginUpdate();
+            orderBook.enqueue(new Order(orderId, security, Side.BUY, 10, 15000 + (int) (orderId % 5), broker, shareholder, 0));
+            orderBook.removeByOrderId(Side.BUY, orderId - 1);
+            security.endUpdate(stamp);
+        }
+        running.set(false);
+        reader.join();
+
+        assertThat(inconsistent.get()).isZero();
+        assertThat(reads.get()).isPositive();
+        assertThat(security.snapshot().version()).isEqualTo(20_000);
+    }
+}
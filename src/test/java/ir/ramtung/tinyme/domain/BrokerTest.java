@@ -0,0 +1,44 @@
+package ir.ramtung.tinyme.domain;
+
+import ir.ramtung.tinyme.domain.entity.Broker;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BrokerTest {
+    @Test
+    void reservation_fails_without_touching_credit_when_credit_is_short() {
+        Broker broker = Broker.builder().credit(1_000).build();
+        assertThat(broker.tryReserve(600)).isTrue();
+        assertThat(broker.tryReserve(600)).isFalse();
+        assertThat(broker.getCredit()).isEqualTo(400);
+        broker.release(600);
+        assertThat(broker.getCredit()).isEqualTo(1_000);
+    }
+
+    @Test
+    void concurrent_reservations_never_overdraw_credit() throws InterruptedException {
+        Broker broker = Broker.builder().credit(10_000).build();
+        AtomicInteger granted = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 5_000; i++) {
+                    if (broker.tryReserve(3))
+                        granted.incrementAndGet();
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+
+        assertThat(granted.get()).isEqualTo(3_333);
+        assertThat(broker.getCredit()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,53 @@
+package ir.ramtung.tinyme.domain;
+
+import ir.ramtung.tinyme.domain.entity.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InactiveOrderBookTest {
+    private Security security;
+    private Broker broker;
+    private Shareholder shareholder;
+    private InactiveOrderBook inactiveOrderBook;
+
+    @BeforeEach
+    void setupOrderBook() {
+        security = Security.builder().isin("ABC").build();
+        broker = Broker.builder().credit(100_000_000L).build();
+        shareholder = Shareholder.builder().build();
+        inactiveOrderBook = new InactiveOrderBook();
+        inactiveOrderBook.enqueue(new StopLimitOrder(1, security, Side.BUY, 10, 15900, broker, shareholder, 0, 15700, 1));
+        inactiveOrderBook.enqueue(new StopLimitOrder(2, security, Side.BUY, 10, 15900, broker, shareholder, 0, 15500, 2));
+        inactiveOrderBook.enqueue(new StopLimitOrder(3, security, Side.BUY, 10, 15900, broker, shareholder, 0, 15700, 3));
+        inactiveOrderBook.enqueue(new StopLimitOrder(4, security, Side.BUY, 10, 15900, broker, shareholder, 0, 15800, 4));
+        inactiveOrderBook.enqueue(new StopLimitOrder(5, security, Side.SELL, 10, 15000, broker, shareholder, 0, 15300, 5));
+        inactiveOrderBook.enqueue(new StopLimitOrder(6, security, Side.SELL, 10, 15000, broker, shareholder, 0, 15600, 6));
+    }
+
+    @Test
+    void queues_are_ordered_by_stop_price_then_arrival() {
+        assertThat(inactiveOrderBook.getBuyQueue()).extracting(Order::getOrderId).containsExactly(2L, 1L, 3L, 4L);
+        assertThat(inactiveOrderBook.getSellQueue()).extracting(Order::getOrderId).containsExactly(6L, 5L);
+    }
+
+    @Test
+    void collects_each_triggered_order_once_and_keeps_it_in_the_book() {
+        List<StopLimitOrder> triggered = new ArrayList<>();
+        inactiveOrderBook.collectTriggeredOrders(Side.BUY, 15750, triggered);
+        inactiveOrderBook.collectTriggeredOrders(Side.BUY, 15750, triggered);
+        assertThat(triggered).extracting(Order::getOrderId).containsExactly(2L, 1L, 3L);
+        assertThat(inactiveOrderBook.getBuyQueue()).extracting(Order::getOrderId).containsExactly(2L, 1L, 3L, 4L);
+    }
+
+    @Test
+    void finds_orders_by_id() {
+        assertThat(((StopLimitOrder) inactiveOrderBook.findByOrderId(Side.BUY, 3)).getRequestId()).isEqualTo(3);
+        assertThat(inactiveOrderBook.removeByOrderId(Side.BUY, 3)).isTrue();
+        assertThat(inactiveOrderBook.getBuyQueue()).extracting(Order::getOrderId).containsExactly(2L, 1L, 4L);
+    }
+}
@@ -0,0 +1,81 @@
+package ir.ramtung.tinyme.domain;
+
+import ir.ramtung.tinyme.domain.entity.*;
+import ir.ramtung.tinyme.domain.service.Matcher;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MarketDepthTest {
+    private Security security;
+    private Broker broker;
+    private Shareholder shareholder;
+    private final Matcher matcher = new Matcher();
+
+    @BeforeEach
+    void setupOrderBook() {
+        security = Security.builder().index(0).isin("ABC").orderBook(new PriceLevelOrderBook()).build();
+        broker = Broker.builder().credit(100_000_000L).build();
+        shareholder = Shareholder.builder().build();
+        shareholder.incPosition(security, 100_000);
+        List<Order> orders = Arrays.asList(
+                new Order(1, security, Side.BUY, 304, 15700, broker, shareholder, 0),
+                new Order(2, security, Side.BUY, 43, 15500, broker, shareholder, 0),
+                new Order(3, security, Side.BUY, 445, 15500, broker, shareholder, 0),
+                new Order(4, security, Side.BUY, 526, 15450, broker, shareholder, 0),
+                new Order(5, security, Side.SELL, 350, 15800, broker, shareholder, 0),
+                new IcebergOrder(6, security, Side.SELL, 800, 15810, broker, shareholder, 100, 0),
+                new Order(7, security, Side.SELL, 285, 15810, broker, shareholder, 0)
+        );
+        orders.forEach(order -> security.getOrderBook().enqueue(order));
+    }
+
+    @Test
+    void reports_the_top_levels_with_displayed_iceberg_quantity() {
+        Depth depth = security.getDepth(2);
+        assertThat(depth.buyLevels()).containsExactly(new DepthLevel(15700, 304, 1), new DepthLevel(15500, 488, 2));
+        assertThat(depth.sellLevels()).containsExactly(new DepthLevel(15800, 350, 1), new DepthLevel(15810, 385, 2));
+    }
+
+    @Test
+    void follows_matches_and_iceberg_replenishment() {
+        matcher.match(new Order(8, security, Side.BUY, 400, 15810, broker, shareholder, 0));
+        assertThat(security.getDepth(5).sellLevels()).containsExactly(new DepthLevel(15810, 335, 2));
+
+        matcher.match(new Order(9, security, Side.SELL, 350, 15700, broker, shareholder, 0));
+        assertThat(security.getDepth(5).buyLevels()).containsExactly(new DepthLevel(15500, 488, 2), new DepthLevel(15450, 526, 1));
+    }
+
+    @Test
+    void follows_removals() {
+        security.getOrderBook().removeByOrderId(Side.BUY, 2);
+        security.getOrderBook().removeByOrderId(Side.SELL, 5);
+        assertThat(security.getDepth(1).buyLevels()).containsExactly(new DepthLevel(15700, 304, 1));
+        assertThat(security.getDepth(1).sellLevels()).containsExactly(new DepthLevel(15810, 385, 2));
+        assertThat(security.getDepth(5).buyLevels()).extracting(DepthLevel::quantity).containsExactly(304, 445, 526);
+    }
+
+    @Test
+    void every_book_type_keeps_the_same_depth() {
+        for (OrderBookType type : OrderBookType.values()) {
+            Security other = Security.builder().index(1).isin("XYZ").orderBook(type.newOrderBook(1)).build();
+            shareholder.incPosition(other, 100_000);
+            other.getOrderBook().enqueue(new Order(1, other, Side.SELL, 350, 15800, broker, shareholder, 0));
+            other.getOrderBook().enqueue(new IcebergOrder(2, other, Side.SELL, 800, 15810, broker, shareholder, 100, 0));
+            other.getOrderBook().enqueue(new Order(3, other, Side.SELL, 285, 15810, broker, shareholder, 0));
+            other.getOrderBook().enqueue(new Order(4, other, Side.BUY, 304, 15700, broker, shareholder, 0));
+
+            matcher.match(new Order(5, other, Side.BUY, 400, 15810, broker, shareholder, 0));
+            other.getOrderBook().removeByOrderId(Side.SELL, 3);
+
+            assertThat(other.getDepth(5).sellLevels()).as(type.name()).containsExactly(new DepthLevel(15810, 50, 1));
+            assertThat(other.getDepth(0).buyLevels()).as(type.name()).isEmpty();
+            assertThat(other.getDepth(5).buyLevels()).as(type.name()).containsExactly(new DepthLevel(15700, 304, 1));
+            assertThat(other.getOrderBook().totalSellQuantityByShareholder(shareholder)).as(type.name()).isEqualTo(750);
+        }
+    }
+}
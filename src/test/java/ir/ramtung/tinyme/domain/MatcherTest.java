@@ -3,6 +3,7 @@ package ir.ramtung.tinyme.domain;
 import ir.ramtung.tinyme.config.MockedJMSTestConfig;
 import ir.ramtung.tinyme.domain.entity.*;
 import ir.ramtung.tinyme.domain.service.Matcher;
+import ir.ramtung.tinyme.messaging.request.EnterOrderRq;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -10,6 +11,7 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.annotation.Import;
 import org.springframework.test.annotation.DirtiesContext;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -31,7 +33,7 @@ public class MatcherTest {
 
     @BeforeEach
     void setupOrderBook() {
-        security = Security.builder().build();
+        security = Security.builder().index(0).build();
         broker = Broker.builder().credit(100_000_000L).build();
         shareholder = Shareholder.builder().build();
         shareholder.incPosition(security, 100_000);
@@ -82,6 +84,18 @@ public class MatcherTest {
         assertThat(security.getOrderBook().getBuyQueue().getFirst().getOrderId()).isEqualTo(3);
     }
 
+    @Test
+    void trades_report_order_state_at_the_time_of_the_fill() {
+        Order order = new Order(11, security, Side.SELL, 500, 15500, broker, shareholder, 0);
+        MatchResult result = matcher.match(order);
+        Trade second = result.trades().getLast();
+        assertThat(second.getBuyOrderId()).isEqualTo(2);
+        assertThat(second.getSellOrderId()).isEqualTo(11);
+        assertThat(second.getSell().getQuantity()).isEqualTo(196);
+        assertThat(second.getSell().getStatus()).isEqualTo(OrderStatus.SNAPSHOT);
+        assertThat(second.getSell()).isSameAs(second.getSell());
+    }
+
     @Test
     void new_buy_order_matches_partially_with_the_entire_sell_queue() {
         Order order = new Order(11, security, BUY, 2000, 15820, broker, shareholder, 0);
@@ -109,7 +123,7 @@ public class MatcherTest {
 
     @Test
     void iceberg_order_in_queue_matched_completely_after_three_rounds() {
-        security = Security.builder().build();
+        security = Security.builder().index(0).build();
         broker = Broker.builder().build();
         orderBook = security.getOrderBook();
         orders = Arrays.asList(
@@ -134,7 +148,7 @@ public class MatcherTest {
 
     @Test
     void insert_iceberg_and_match_until_quantity_is_less_than_peak_size() {
-        security = Security.builder().isin("TEST").build();
+        security = Security.builder().index(1).isin("TEST").build();
         shareholder.incPosition(security, 1_000);
         security.getOrderBook().enqueue(
                 new Order(1, security, Side.SELL, 100, 10, broker, shareholder, 0)
@@ -150,4 +164,19 @@ public class MatcherTest {
         assertThat(security.getOrderBook().getBuyQueue().get(0).getQuantity()).isEqualTo(20);
 
     }
+
+    @Test
+    void trade_snapshots_keep_the_price_and_peak_at_trade_time() {
+        IcebergOrder iceberg = new IcebergOrder(11, security, BUY, 500, 15900, broker, shareholder, 200, 0);
+        orderBook.enqueue(iceberg);
+        Trade trade = matcher.match(new Order(12, security, Side.SELL, 50, 15900, broker, shareholder, 0)).trades().getFirst();
+
+        orderBook.amend(iceberg, EnterOrderRq.createUpdateOrderRq(1, null, 11, LocalDateTime.now(), BUY, 450, 15950, 0, 0, 100, 0, 0));
+
+        IcebergOrder buy = (IcebergOrder) trade.getBuy();
+        assertThat(buy.getPrice()).isEqualTo(15900);
+        assertThat(buy.getPeakSize()).isEqualTo(200);
+        assertThat(buy.getTotalQuantity()).isEqualTo(500);
+        assertThat(buy.getQuantity()).isEqualTo(200);
+    }
 }
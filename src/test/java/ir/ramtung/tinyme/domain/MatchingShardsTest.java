@@ -0,0 +1,59 @@
+package ir.ramtung.tinyme.domain;
+
+import ir.ramtung.tinyme.domain.entity.Broker;
+import ir.ramtung.tinyme.domain.service.MatchingShards;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MatchingShardsTest {
+    @Test
+    void requests_on_one_security_run_in_arrival_order_on_one_thread() throws InterruptedException {
+        MatchingShards shards = new MatchingShards(4);
+        List<Integer> executed = new ArrayList<>();
+        Set<String> threads = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            int request = i;
+            shards.execute(3, () -> {
+                executed.add(request);
+                threads.add(Thread.currentThread().getName());
+            });
+        }
+        shards.shutdown();
+
+        assertThat(executed).hasSize(1000).isSorted();
+        assertThat(threads).containsExactly("matching-shard-" + shards.shardOf(3));
+    }
+
+    @Test
+    void without_shards_requests_run_on_the_caller_thread() {
+        MatchingShards shards = new MatchingShards(0);
+        List<String> threads = new ArrayList<>();
+        shards.execute(3, () -> threads.add(Thread.currentThread().getName()));
+        assertThat(threads).containsExactly(Thread.currentThread().getName());
+    }
+
+    @Test
+    void broker_credit_stays_consistent_across_shards() throws InterruptedException {
+        MatchingShards shards = new MatchingShards(4);
+        Broker broker = Broker.builder().credit(0).build();
+        for (int i = 0; i < 10_000; i++)
+            shards.execute(i % 16, () -> broker.increaseCreditBy(1));
+        shards.shutdown();
+        assertThat(broker.getCredit()).isEqualTo(10_000);
+    }
+
+    @Test
+    void consecutive_security_indices_spread_evenly_over_the_shards() {
+        MatchingShards shards = new MatchingShards(4);
+        int[] securitiesPerShard = new int[shards.getShardCount()];
+        for (int securityIndex = 0; securityIndex < 100; securityIndex++)
+            securitiesPerShard[shards.shardOf(securityIndex)]++;
+        assertThat(securitiesPerShard).containsOnly(25);
+    }
+}
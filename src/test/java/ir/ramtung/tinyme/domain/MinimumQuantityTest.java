@@ -24,6 +24,7 @@ import org.springframework.test.annotation.DirtiesContext;
 import java.time.LocalDateTime;
 import java.util.List;
 
+import static ir.ramtung.tinyme.domain.PublishedEvents.containing;
 import static ir.ramtung.tinyme.domain.entity.Side.BUY;
 import static org.mockito.Mockito.verify;
 
@@ -54,8 +55,7 @@ public class MinimumQuantityTest {
         brokerRepository.clear();
         shareholderRepository.clear();
 
-        security = Security.builder().isin("ABC").build();
-        securityRepository.addSecurity(security);
+        security = securityRepository.addSecurity(Security.builder().isin("ABC"));
 
         shareholder = Shareholder.builder().build();
         shareholder.incPosition(security, 100_000);
@@ -78,8 +78,8 @@ public class MinimumQuantityTest {
 
         Trade trade = new Trade(security, 5, 3, incomingBuyOrder, matchingSellOrder);
 
-        verify(eventPublisher).publish((new OrderAcceptedEvent(1, 1)));
-        verify(eventPublisher).publish(new OrderExecutedEvent(1, 1, List.of(new TradeDTO(trade))));
+        verify(eventPublisher).publishAll(containing(new OrderAcceptedEvent(1, 1)));
+        verify(eventPublisher).publishAll(containing(new OrderExecutedEvent(1, 1, List.of(new TradeDTO(trade)))));
     }
     @Test
     void invalid_buy_order_if_minimum_quantity_more_than_quantity() {
@@ -91,7 +91,7 @@ public class MinimumQuantityTest {
 
         Trade trade = new Trade(security, 5, 3, matchingBuyOrder, incomingSellOrder);
 
-        verify(eventPublisher).publish(new OrderRejectedEvent(1, 1, List.of(Message.INVALID_MINIMUM_EXECUTION_QUANTITY)));
+        verify(eventPublisher).publishAll(containing(new OrderRejectedEvent(1, 1, List.of(Message.INVALID_MINIMUM_EXECUTION_QUANTITY))));
     }
     @Test
     void invalid_order_if_minimum_quantity_less_than_zero() {
@@ -103,7 +103,7 @@ public class MinimumQuantityTest {
 
         Trade trade = new Trade(security, 5, 3, matchingBuyOrder, incomingSellOrder);
 
-        verify(eventPublisher).publish(new OrderRejectedEvent(1, 1, List.of(Message.MINIMUM_EXECUTION_QUANTITY_NOT_POSITIVE)));
+        verify(eventPublisher).publishAll(containing(new OrderRejectedEvent(1, 1, List.of(Message.MINIMUM_EXECUTION_QUANTITY_NOT_POSITIVE))));
     }
     @Test
     void reject_order_if_minimum_executed_quantity_not_meeted() {
@@ -112,7 +112,7 @@ public class MinimumQuantityTest {
 
         orderHandler.handleEnterOrder(EnterOrderRq.createNewOrderRq(1, "ABC", 1, LocalDateTime.now(), BUY, 5, 5, 1, shareholder.getShareholderId(), 0, 4, 0));
 
-        verify(eventPublisher).publish(new OrderRejectedEvent(1, 1, List.of(Message.BROKER_HAS_NOT_ENOUGH_INITIAL_TRANSACTION)));
+        verify(eventPublisher).publishAll(containing(new OrderRejectedEvent(1, 1, List.of(Message.BROKER_HAS_NOT_ENOUGH_INITIAL_TRANSACTION))));
     }
     @Test
     void invalid_update_order_if_minimum_quantity_more_than_quantity() {
@@ -123,7 +123,7 @@ public class MinimumQuantityTest {
 
         orderHandler.handleEnterOrder(EnterOrderRq.createUpdateOrderRq(1, "ABC", 1, LocalDateTime.now(), BUY, 1, 5, 1, shareholder.getShareholderId(), 0, 2,0));
 
-        verify(eventPublisher).publish(new OrderRejectedEvent(1, 1, List.of(Message.INVALID_MINIMUM_EXECUTION_QUANTITY)));
+        verify(eventPublisher).publishAll(containing(new OrderRejectedEvent(1, 1, List.of(Message.INVALID_MINIMUM_EXECUTION_QUANTITY))));
     }
     @Test
     void invalid_update_order_if_minimum_quantity_has_changed() {
@@ -135,7 +135,7 @@ public class MinimumQuantityTest {
 
         orderHandler.handleEnterOrder(EnterOrderRq.createUpdateOrderRq(1, "ABC", 1, LocalDateTime.now(), BUY, 5, 5, 1, shareholder.getShareholderId(), 0, 3, 0));
 
-        verify(eventPublisher).publish(new OrderRejectedEvent(1, 1, List.of(Message.CANNOT_CHANGE_MINIMUM_EXECUTION_QUANTITY)));
+        verify(eventPublisher).publishAll(containing(new OrderRejectedEvent(1, 1, List.of(Message.CANNOT_CHANGE_MINIMUM_EXECUTION_QUANTITY))));
     }
     @Test
     void update_order_if_minimum_quantity_not_changed() {
@@ -146,7 +146,7 @@ public class MinimumQuantityTest {
 
         orderHandler.handleEnterOrder(EnterOrderRq.createUpdateOrderRq(1, "ABC", 1, LocalDateTime.now(), BUY, 1, 5, 1, shareholder.getShareholderId(), 0, 2, 0));
 
-        verify(eventPublisher).publish((new OrderAcceptedEvent(1, 1)));
+        verify(eventPublisher).publishAll(containing(new OrderAcceptedEvent(1, 1)));
     }
     @Test
     void new_iceberg_buy_order_matches_with_the_first_buy_with_minimum_quantity_less_than_buy_quantity() {
@@ -158,8 +158,8 @@ public class MinimumQuantityTest {
 
         Trade trade = new Trade(security, 5, 3, matchingBuyOrder, incomingSellOrder);
 
-        verify(eventPublisher).publish((new OrderAcceptedEvent(1, 1)));
-        verify(eventPublisher).publish(new OrderExecutedEvent(1, 1, List.of(new TradeDTO(trade))));
+        verify(eventPublisher).publishAll(containing(new OrderAcceptedEvent(1, 1)));
+        verify(eventPublisher).publishAll(containing(new OrderExecutedEvent(1, 1, List.of(new TradeDTO(trade)))));
     }
     @Test
     void invalid_iceberg_buy_order_if_minimum_quantity_more_than_buy_quantity() {
@@ -169,7 +169,7 @@ public class MinimumQuantityTest {
 
         orderHandler.handleEnterOrder(EnterOrderRq.createNewOrderRq(1, "ABC", 1, LocalDateTime.now(), BUY, 5, 5, 1, shareholder.getShareholderId(), 0, 4, 0));
 
-        verify(eventPublisher).publish(new OrderRejectedEvent(1, 1, List.of(Message.BROKER_HAS_NOT_ENOUGH_INITIAL_TRANSACTION)));
+        verify(eventPublisher).publishAll(containing(new OrderRejectedEvent(1, 1, List.of(Message.BROKER_HAS_NOT_ENOUGH_INITIAL_TRANSACTION))));
     }
     @Test
     void update_request_does_not_check_the_minimum_quantity() {
@@ -179,6 +179,6 @@ public class MinimumQuantityTest {
         security.getOrderBook().enqueue(SellOrder);
 
         orderHandler.handleEnterOrder(EnterOrderRq.createUpdateOrderRq(1, "ABC", 1, LocalDateTime.now(), BUY, 10, 6, 1, shareholder.getShareholderId(), 0, 5, 0));
-        verify(eventPublisher).publish((new OrderUpdatedEvent(1, 1)));
+        verify(eventPublisher).publishAll(containing(new OrderUpdatedEvent(1, 1)));
     }
 }
@@ -0,0 +1,111 @@
+package ir.ramtung.tinyme.domain;
+
+import ir.ramtung.tinyme.domain.entity.*;
+import ir.ramtung.tinyme.domain.service.Matcher;
+import ir.ramtung.tinyme.messaging.request.EnterOrderRq;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatNoException;
+
+class OffHeapOrderBookTest {
+    private Security security;
+    private Broker broker;
+    private Shareholder shareholder;
+    private List<Order> orders;
+    private final Matcher matcher = new Matcher();
+
+    @BeforeEach
+    void setupOrderBook() {
+        security = Security.builder().index(0).isin("ABC").orderBook(new OffHeapOrderBook(4)).build();
+        broker = Broker.builder().credit(100_000_000L).build();
+        shareholder = Shareholder.builder().build();
+        shareholder.incPosition(security, 100_000);
+        orders = Arrays.asList(
+                new Order(1, security, Side.BUY, 304, 15700, broker, shareholder, 0),
+                new Order(2, security, Side.BUY, 43, 15500, broker, shareholder, 0),
+                new Order(3, security, Side.BUY, 445, 15450, broker, shareholder, 0),
+                new Order(4, security, Side.BUY, 526, 15450, broker, shareholder, 0),
+                new Order(5, security, Side.BUY, 1000, 15400, broker, shareholder, 0),
+                new Order(6, security, Side.SELL, 350, 15800, broker, shareholder, 0),
+                new Order(7, security, Side.SELL, 285, 15810, broker, shareholder, 0),
+                new Order(8, security, Side.SELL, 800, 15810, broker, shareholder, 0),
+                new Order(9, security, Side.SELL, 340, 15820, broker, shareholder, 0),
+                new Order(10, security, Side.SELL, 65, 15820, broker, shareholder, 0)
+        );
+        orders.forEach(order -> security.getOrderBook().enqueue(order));
+    }
+
+    @Test
+    void views_are_equal_to_the_enqueued_orders() {
+        assertThat(security.getOrderBook().getBuyQueue()).isEqualTo(orders.subList(0, 5));
+        assertThat(security.getOrderBook().getSellQueue()).isEqualTo(orders.subList(5, 10));
+        assertThat(security.getOrderBook().findByOrderId(Side.BUY, 3)).isEqualTo(orders.get(2));
+        assertThat(security.getOrderBook().findByOrderId(Side.BUY, 3).getBroker()).isSameAs(broker);
+    }
+
+    @Test
+    void keeps_iceberg_state_off_heap() {
+        IcebergOrder iceberg = new IcebergOrder(11, security, Side.SELL, 450, 15800, broker, shareholder, 200, 0);
+        security.getOrderBook().enqueue(iceberg);
+
+        matcher.match(new Order(12, security, Side.BUY, 500, 15800, broker, shareholder, 0));
+
+        Order stored = security.getOrderBook().findByOrderId(Side.SELL, 11);
+        assertThat(stored).isInstanceOf(IcebergOrder.class);
+        assertThat(stored.getQuantity()).isEqualTo(50);
+        assertThat(stored.getTotalQuantity()).isEqualTo(300);
+        assertThat(security.getOrderBook().getSellQueue()).extracting(Order::getOrderId).containsExactly(11L, 7L, 8L, 9L, 10L);
+    }
+
+    @Test
+    void restores_the_book_after_a_credit_rollback() {
+        Broker poorBroker = Broker.builder().credit(6_000_000L).build();
+        MatchResult result = matcher.match(new Order(11, security, Side.BUY, 700, 15810, poorBroker, shareholder, 0));
+        assertThat(result.outcome()).isEqualTo(MatchingOutcome.NOT_ENOUGH_CREDIT);
+        assertThat(security.getOrderBook().getSellQueue()).extracting(Order::getQuantity).containsExactly(350, 285, 800, 340, 65);
+    }
+
+    @Test
+    void updates_through_security_are_written_back() {
+        EnterOrderRq decrease = EnterOrderRq.createUpdateOrderRq(1, "ABC", 3, LocalDateTime.now(), Side.BUY, 440, 15450, 0, 0, 0, 0, 0);
+        EnterOrderRq reprice = EnterOrderRq.createUpdateOrderRq(2, "ABC", 4, LocalDateTime.now(), Side.BUY, 526, 15600, 0, 0, 0, 0, 0);
+        assertThatNoException().isThrownBy(() -> security.updateOrder(decrease, matcher));
+        assertThatNoException().isThrownBy(() -> security.updateOrder(reprice, matcher));
+        assertThat(security.getOrderBook().getBuyQueue()).extracting(Order::getOrderId).containsExactly(1L, 4L, 2L, 3L, 5L);
+        assertThat(security.getOrderBook().findByOrderId(Side.BUY, 3).getQuantity()).isEqualTo(440);
+    }
+
+    @Test
+    void iteration_rebinds_one_view_per_order_kind() {
+        Iterator<Order> it = security.getOrderBook().ordersInPriority(Side.SELL);
+        Order first = it.next();
+        assertThat(first.getOrderId()).isEqualTo(6);
+        Order second = it.next();
+        assertThat(second).isSameAs(first);
+        assertThat(second.getOrderId()).isEqualTo(7);
+        assertThat(second.getEntryTime()).isEqualTo(orders.get(6).getEntryTime());
+        assertThat(second.snapshot()).isNotSameAs(second).isEqualTo(orders.get(6).snapshot());
+    }
+
+    @Test
+    void plan_through_views_follows_iceberg_replenishment() {
+        security.getOrderBook().enqueue(new IcebergOrder(11, security, Side.SELL, 450, 15800, broker, shareholder, 100, 0));
+        Order order = new Order(12, security, Side.BUY, 700, 15800, broker, shareholder, 0);
+
+        assertThat(matcher.plan(order)).isEqualTo(new MatchPlan(MatchingOutcome.EXECUTED, 5, 700, 700L * 15800, 0, 0));
+        assertThat(matcher.execute(order).trades()).extracting(Trade::getQuantity).containsExactly(350, 100, 100, 100, 50);
+    }
+
+    @Test
+    void reports_off_heap_memory_per_security() {
+        assertThat(security.getOffHeapMemoryUsage()).isGreaterThanOrEqualTo(10L * 77);
+        assertThat(Security.builder().index(0).build().getOffHeapMemoryUsage()).isZero();
+    }
+}
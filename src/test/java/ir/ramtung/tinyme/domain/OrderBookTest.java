@@ -1,6 +1,7 @@
 package ir.ramtung.tinyme.domain;
 
 import ir.ramtung.tinyme.domain.entity.*;
+import ir.ramtung.tinyme.domain.service.Matcher;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -11,12 +12,14 @@ import static org.assertj.core.api.Assertions.assertThat;
 
 class OrderBookTest {
     private Security security;
+    private Broker broker;
+    private Shareholder shareholder;
     private List<Order> orders;
     @BeforeEach
     void setupOrderBook() {
-        security = Security.builder().build();
-        Broker broker = Broker.builder().build();
-        Shareholder shareholder = Shareholder.builder().build();
+        security = Security.builder().index(0).build();
+        broker = Broker.builder().credit(100_000_000L).build();
+        shareholder = Shareholder.builder().build();
         shareholder.incPosition(security, 100_000);
         orders = Arrays.asList(
                 new Order(1, security, Side.BUY, 304, 15700, broker, shareholder, 0),
@@ -76,4 +79,30 @@ class OrderBookTest {
         orderBook.removeByOrderId(Side.SELL, 10);
         assertThat(orderBook.getSellQueue()).isEqualTo(orders.subList(5, 9));
     }
-}
\ No newline at end of file
+
+    @Test
+    void tracks_sell_quantity_of_shareholder_through_enqueue_and_remove() {
+        OrderBook orderBook = security.getOrderBook();
+        assertThat(orderBook.totalSellQuantityByShareholder(shareholder)).isEqualTo(1840);
+        orderBook.removeByOrderId(Side.SELL, 8);
+        orderBook.removeFirst(Side.SELL);
+        assertThat(orderBook.totalSellQuantityByShareholder(shareholder)).isEqualTo(690);
+        assertThat(orderBook.totalSellQuantityByShareholder(Shareholder.builder().shareholderId(1).build())).isZero();
+    }
+
+    @Test
+    void tracks_sell_quantity_of_shareholder_through_partial_fills_and_icebergs() {
+        OrderBook orderBook = security.getOrderBook();
+        orderBook.enqueue(new IcebergOrder(11, security, Side.SELL, 500, 15800, broker, shareholder, 100, 0));
+        new Matcher().match(new Order(12, security, Side.BUY, 560, 15800, broker, shareholder, 0));
+        assertThat(orderBook.totalSellQuantityByShareholder(shareholder)).isEqualTo(1840 + 500 - 560);
+    }
+
+    @Test
+    void tracks_sell_quantity_of_shareholder_through_rollbacks() {
+        OrderBook orderBook = security.getOrderBook();
+        Broker poorBroker = Broker.builder().credit(6_000_000L).build();
+        new Matcher().match(new Order(11, security, Side.BUY, 700, 15810, poorBroker, shareholder, 0));
+        assertThat(orderBook.totalSellQuantityByShareholder(shareholder)).isEqualTo(1840);
+    }
+}
@@ -21,6 +21,7 @@ import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
 
+import static ir.ramtung.tinyme.domain.PublishedEvents.containing;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.verify;
 
@@ -47,8 +48,7 @@ public class OrderHandlerCreditCheckRollbackTest {
         shareholderRepository.clear();
         brokerRepository.clear();
 
-        security = Security.builder().build();
-        securityRepository.addSecurity(security);
+        security = securityRepository.addSecurity(Security.builder());
 
         shareholder = Shareholder.builder().build();
         shareholderRepository.addShareholder(shareholder);
@@ -85,7 +85,7 @@ public class OrderHandlerCreditCheckRollbackTest {
         assertThat(orderBook.getSellQueue()).extracting("price")
                 .containsExactly(500, 500, 600);
 
-        verify(eventPublisher).publish(new OrderRejectedEvent(1, 200, List.of(Message.BUYER_HAS_NOT_ENOUGH_CREDIT)));
+        verify(eventPublisher).publishAll(containing(new OrderRejectedEvent(1, 200, List.of(Message.BUYER_HAS_NOT_ENOUGH_CREDIT))));
     }
 
     @Test
@@ -119,7 +119,7 @@ public class OrderHandlerCreditCheckRollbackTest {
         assertThat(orderBook.getSellQueue()).extracting("price")
                 .containsExactly(1545, 1545, 1550);
 
-        verify(eventPublisher).publish(new OrderRejectedEvent(1, 200, List.of(Message.BUYER_HAS_NOT_ENOUGH_CREDIT)));
+        verify(eventPublisher).publishAll(containing(new OrderRejectedEvent(1, 200, List.of(Message.BUYER_HAS_NOT_ENOUGH_CREDIT))));
     }
 
     @Test
@@ -156,6 +156,6 @@ public class OrderHandlerCreditCheckRollbackTest {
         assertThat(orderBook.getSellQueue()).extracting("price")
                 .containsExactly(1545, 1545, 1550);
 
-        verify(eventPublisher).publish(new OrderRejectedEvent(1, 4, List.of(Message.BUYER_HAS_NOT_ENOUGH_CREDIT)));
+        verify(eventPublisher).publishAll(containing(new OrderRejectedEvent(1, 4, List.of(Message.BUYER_HAS_NOT_ENOUGH_CREDIT))));
     }
 }
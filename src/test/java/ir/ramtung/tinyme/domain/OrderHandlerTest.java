@@ -20,11 +20,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.annotation.Import;
 import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
 
+import static ir.ramtung.tinyme.domain.PublishedEvents.containing;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.*;
 
@@ -54,8 +56,7 @@ public class OrderHandlerTest {
         brokerRepository.clear();
         shareholderRepository.clear();
 
-        security = Security.builder().isin("ABC").build();
-        securityRepository.addSecurity(security);
+        security = securityRepository.addSecurity(Security.builder().isin("ABC"));
 
         shareholder = Shareholder.builder().build();
         shareholder.incPosition(security, 100_000);
@@ -78,14 +79,14 @@ public class OrderHandlerTest {
 
         Trade trade = new Trade(security, matchingBuyOrder.getPrice(), incomingSellOrder.getQuantity(),
                 matchingBuyOrder, incomingSellOrder);
-        verify(eventPublisher).publish((new OrderAcceptedEvent(1, 200)));
-        verify(eventPublisher).publish(new OrderExecutedEvent(1, 200, List.of(new TradeDTO(trade))));
+        verify(eventPublisher).publishAll(containing(new OrderAcceptedEvent(1, 200)));
+        verify(eventPublisher).publishAll(containing(new OrderExecutedEvent(1, 200, List.of(new TradeDTO(trade)))));
     }
 
     @Test
     void new_order_queued_with_no_trade() {
         orderHandler.handleEnterOrder(EnterOrderRq.createNewOrderRq(1, "ABC", 200, LocalDateTime.now(), Side.SELL, 300, 15450, 2, shareholder.getShareholderId(), 0, 0, 0));
-        verify(eventPublisher).publish(new OrderAcceptedEvent(1, 200));
+        verify(eventPublisher).publishAll(containing(new OrderAcceptedEvent(1, 200)));
     }
     @Test
     void new_order_matched_partially_with_two_trades() {
@@ -109,8 +110,8 @@ public class OrderHandlerTest {
                 matchingBuyOrder1, incomingSellOrder);
         Trade trade2 = new Trade(security, matchingBuyOrder2.getPrice(), matchingBuyOrder2.getQuantity(),
                 matchingBuyOrder2, incomingSellOrder.snapshotWithQuantity(700));
-        verify(eventPublisher).publish(new OrderAcceptedEvent(1, 200));
-        verify(eventPublisher).publish(new OrderExecutedEvent(1, 200, List.of(new TradeDTO(trade1), new TradeDTO(trade2))));
+        verify(eventPublisher).publishAll(containing(new OrderAcceptedEvent(1, 200)));
+        verify(eventPublisher).publishAll(containing(new OrderExecutedEvent(1, 200, List.of(new TradeDTO(trade1), new TradeDTO(trade2)))));
     }
 
     @Test
@@ -133,16 +134,37 @@ public class OrderHandlerTest {
                 incomingSellOrder.getBroker().getBrokerId(),
                 incomingSellOrder.getShareholder().getShareholderId(), 100, 0, 0));
 
-        verify(mockEventPublisher).publish(new OrderAcceptedEvent(1, 200));
-        verify(mockEventPublisher).publish(new OrderExecutedEvent(1, 200, List.of(new TradeDTO(trade))));
+        verify(mockEventPublisher).publishAll(containing(new OrderAcceptedEvent(1, 200)));
+        verify(mockEventPublisher).publishAll(containing(new OrderExecutedEvent(1, 200, List.of(new TradeDTO(trade)))));
+    }
+
+    @Test
+    void envelope_mode_publishes_all_events_of_a_request_in_one_message() {
+        Order matchingBuyOrder = new Order(100, security, Side.BUY, 1000, 15500, broker1, shareholder, 0);
+        security.getOrderBook().enqueue(matchingBuyOrder);
+        Order incomingSellOrder = new Order(200, security, Side.SELL, 300, 15450, broker2, shareholder, 0);
+        Trade trade = new Trade(security, matchingBuyOrder.getPrice(), incomingSellOrder.getQuantity(),
+                matchingBuyOrder, incomingSellOrder);
+
+        EventPublisher mockEventPublisher = mock(EventPublisher.class);
+        OrderHandler myOrderHandler = new OrderHandler(securityRepository, brokerRepository, shareholderRepository, mockEventPublisher, new Matcher());
+        ReflectionTestUtils.setField(myOrderHandler, "responseEnvelope", true);
+        myOrderHandler.handleEnterOrder(EnterOrderRq.createNewOrderRq(1, security.getIsin(), 200, LocalDateTime.now(),
+                Side.SELL, 300, 15450, broker2.getBrokerId(), shareholder.getShareholderId(), 0, 0, 0));
+
+        verify(mockEventPublisher).publish(new EventEnvelope(1, List.of(
+                new OrderAcceptedEvent(1, 200),
+                new OrderExecutedEvent(1, 200, List.of(new TradeDTO(trade))))));
+        verify(mockEventPublisher, never()).publish(new OrderAcceptedEvent(1, 200));
+        verify(mockEventPublisher, never()).publishAll(any());
     }
 
     @Test
     void invalid_new_order_with_multiple_errors() {
         orderHandler.handleEnterOrder(EnterOrderRq.createNewOrderRq(1, "XXX", -1, LocalDateTime.now(), Side.SELL, 0, 0, -1, -1, 0, 0, 0));
-        ArgumentCaptor<OrderRejectedEvent> orderRejectedCaptor = ArgumentCaptor.forClass(OrderRejectedEvent.class);
-        verify(eventPublisher).publish(orderRejectedCaptor.capture());
-        OrderRejectedEvent outputEvent = orderRejectedCaptor.getValue();
+        ArgumentCaptor<List<Event>> eventsCaptor = eventsCaptor();
+        verify(eventPublisher).publishAll(eventsCaptor.capture());
+        OrderRejectedEvent outputEvent = (OrderRejectedEvent) eventsCaptor.getValue().get(0);
         assertThat(outputEvent.getOrderId()).isEqualTo(-1);
         assertThat(outputEvent.getErrors()).containsOnly(
                 Message.UNKNOWN_SECURITY_ISIN,
@@ -157,12 +179,11 @@ public class OrderHandlerTest {
 
     @Test
     void invalid_new_order_with_tick_and_lot_size_errors() {
-        Security aSecurity = Security.builder().isin("XXX").lotSize(10).tickSize(10).build();
-        securityRepository.addSecurity(aSecurity);
+        securityRepository.addSecurity(Security.builder().isin("XXX").lotSize(10).tickSize(10));
         orderHandler.handleEnterOrder(EnterOrderRq.createNewOrderRq(1, "XXX", 1, LocalDateTime.now(), Side.SELL, 12, 1001, 1, shareholder.getShareholderId(), 0, 0, 0));
-        ArgumentCaptor<OrderRejectedEvent> orderRejectedCaptor = ArgumentCaptor.forClass(OrderRejectedEvent.class);
-        verify(eventPublisher).publish(orderRejectedCaptor.capture());
-        OrderRejectedEvent outputEvent = orderRejectedCaptor.getValue();
+        ArgumentCaptor<List<Event>> eventsCaptor = eventsCaptor();
+        verify(eventPublisher).publishAll(eventsCaptor.capture());
+        OrderRejectedEvent outputEvent = (OrderRejectedEvent) eventsCaptor.getValue().get(0);
         assertThat(outputEvent.getOrderId()).isEqualTo(1);
         assertThat(outputEvent.getErrors()).containsOnly(
                 Message.QUANTITY_NOT_MULTIPLE_OF_LOT_SIZE,
@@ -175,7 +196,7 @@ public class OrderHandlerTest {
         Order queuedOrder = new Order(200, security, Side.SELL, 500, 15450, broker1, shareholder, 0);
         security.getOrderBook().enqueue(queuedOrder);
         orderHandler.handleEnterOrder(EnterOrderRq.createUpdateOrderRq(1, "ABC", 200, LocalDateTime.now(), Side.SELL, 1000, 15450, 1, shareholder.getShareholderId(), 0, 0, 0));
-        verify(eventPublisher).publish(new OrderUpdatedEvent(1, 200));
+        verify(eventPublisher).publishAll(containing(new OrderUpdatedEvent(1, 200)));
     }
 
     @Test
@@ -189,22 +210,22 @@ public class OrderHandlerTest {
         orderHandler.handleEnterOrder(EnterOrderRq.createUpdateOrderRq(1, "ABC", 200, LocalDateTime.now(), Side.SELL, 1000, 15450, broker2.getBrokerId(), shareholder.getShareholderId(), 0, 0, 0));
 
         Trade trade = new Trade(security, 15450, 500, matchingOrder, afterUpdate);
-        verify(eventPublisher).publish(new OrderUpdatedEvent(1, 200));
-        verify(eventPublisher).publish(new OrderExecutedEvent(1, 200, List.of(new TradeDTO(trade))));
+        verify(eventPublisher).publishAll(containing(new OrderUpdatedEvent(1, 200)));
+        verify(eventPublisher).publishAll(containing(new OrderExecutedEvent(1, 200, List.of(new TradeDTO(trade)))));
     }
 
     @Test
     void invalid_update_with_order_id_not_found() {
         orderHandler.handleEnterOrder(EnterOrderRq.createUpdateOrderRq(1, "ABC", 200, LocalDateTime.now(), Side.SELL, 1000, 15450, 1, shareholder.getShareholderId(), 0, 0, 0));
-        verify(eventPublisher).publish(new OrderRejectedEvent(1, 200, any()));
+        verify(eventPublisher).publishAll(containing(OrderRejectedEvent.class));
     }
 
     @Test
     void invalid_update_with_multiple_errors() {
         orderHandler.handleEnterOrder(EnterOrderRq.createUpdateOrderRq(1, "XXX", -1, LocalDateTime.now(), Side.SELL, 0, 0, -1, shareholder.getShareholderId(), 0, 0, 0));
-        ArgumentCaptor<OrderRejectedEvent> orderRejectedCaptor = ArgumentCaptor.forClass(OrderRejectedEvent.class);
-        verify(eventPublisher).publish(orderRejectedCaptor.capture());
-        OrderRejectedEvent outputEvent = orderRejectedCaptor.getValue();
+        ArgumentCaptor<List<Event>> eventsCaptor = eventsCaptor();
+        verify(eventPublisher).publishAll(eventsCaptor.capture());
+        OrderRejectedEvent outputEvent = (OrderRejectedEvent) eventsCaptor.getValue().get(0);
         assertThat(outputEvent.getOrderId()).isEqualTo(-1);
         assertThat(outputEvent.getErrors()).containsOnly(
                 Message.UNKNOWN_SECURITY_ISIN,
@@ -225,7 +246,7 @@ public class OrderHandlerTest {
         security.getOrderBook().enqueue(someOrder);
         security.getOrderBook().enqueue(queuedOrder);
         orderHandler.handleDeleteOrder(new DeleteOrderRq(1, security.getIsin(), Side.BUY, 200));
-        verify(eventPublisher).publish(new OrderDeletedEvent(1, 200));
+        verify(eventPublisher).publishAll(containing(new OrderDeletedEvent(1, 200)));
         assertThat(buyBroker.getCredit()).isEqualTo(1_000_000 + 1000*15500);
     }
 
@@ -238,7 +259,7 @@ public class OrderHandlerTest {
         security.getOrderBook().enqueue(someOrder);
         security.getOrderBook().enqueue(queuedOrder);
         orderHandler.handleDeleteOrder(new DeleteOrderRq(1, security.getIsin(), Side.SELL, 200));
-        verify(eventPublisher).publish(new OrderDeletedEvent(1, 200));
+        verify(eventPublisher).publishAll(containing(new OrderDeletedEvent(1, 200)));
         assertThat(sellBroker.getCredit()).isEqualTo(1_000_000);
     }
 
@@ -250,7 +271,7 @@ public class OrderHandlerTest {
         Order queuedOrder = new Order(200, security, Side.BUY, 1000, 15500, buyBroker, shareholder, 0);
         security.getOrderBook().enqueue(queuedOrder);
         orderHandler.handleDeleteOrder(new DeleteOrderRq(1, "ABC", Side.SELL, 100));
-        verify(eventPublisher).publish(new OrderRejectedEvent(1, 100, List.of(Message.ORDER_ID_NOT_FOUND)));
+        verify(eventPublisher).publishAll(containing(new OrderRejectedEvent(1, 100, List.of(Message.ORDER_ID_NOT_FOUND))));
         assertThat(buyBroker.getCredit()).isEqualTo(1_000_000);
     }
 
@@ -259,7 +280,7 @@ public class OrderHandlerTest {
         Order queuedOrder = new Order(200, security, Side.BUY, 1000, 15500, broker1, shareholder, 0);
         security.getOrderBook().enqueue(queuedOrder);
         orderHandler.handleDeleteOrder(new DeleteOrderRq(1, "XXX", Side.SELL, 200));
-        verify(eventPublisher).publish(new OrderRejectedEvent(1, 200, List.of(Message.UNKNOWN_SECURITY_ISIN)));
+        verify(eventPublisher).publishAll(containing(new OrderRejectedEvent(1, 200, List.of(Message.UNKNOWN_SECURITY_ISIN))));
     }
 
     @Test
@@ -314,7 +335,7 @@ public class OrderHandlerTest {
 
         orderHandler.handleEnterOrder(EnterOrderRq.createNewOrderRq(1, "ABC", 200, LocalDateTime.now(), Side.BUY, 30, 100, 10, shareholder.getShareholderId(), 0, 0, 0));
         assertThat(broker.getCredit()).isEqualTo(1000);
-        verify(eventPublisher).publish(new OrderRejectedEvent(1, 200, List.of(Message.BUYER_HAS_NOT_ENOUGH_CREDIT)));
+        verify(eventPublisher).publishAll(containing(new OrderRejectedEvent(1, 200, List.of(Message.BUYER_HAS_NOT_ENOUGH_CREDIT))));
     }
 
     @Test
@@ -339,8 +360,8 @@ public class OrderHandlerTest {
         assertThat(broker2.getCredit()).isEqualTo(100_000 + 20*500);
         assertThat(broker3.getCredit()).isEqualTo(0);
 
-        verify(eventPublisher).publish(new OrderAcceptedEvent(1, 200));
-        verify(eventPublisher).publish(new OrderExecutedEvent(1, 200, List.of(new TradeDTO(trade1), new TradeDTO(trade2))));
+        verify(eventPublisher).publishAll(containing(new OrderAcceptedEvent(1, 200)));
+        verify(eventPublisher).publishAll(containing(new OrderExecutedEvent(1, 200, List.of(new TradeDTO(trade1), new TradeDTO(trade2)))));
     }
 
     @Test
@@ -360,7 +381,7 @@ public class OrderHandlerTest {
         assertThat(broker2.getCredit()).isEqualTo(100_000);
         assertThat(broker3.getCredit()).isEqualTo(50_000);
 
-        verify(eventPublisher).publish(new OrderRejectedEvent(1, 200, List.of(Message.BUYER_HAS_NOT_ENOUGH_CREDIT)));
+        verify(eventPublisher).publishAll(containing(new OrderRejectedEvent(1, 200, List.of(Message.BUYER_HAS_NOT_ENOUGH_CREDIT))));
     }
 
     @Test
@@ -470,7 +491,7 @@ public class OrderHandlerTest {
 
         orderHandler.handleEnterOrder(EnterOrderRq.createNewOrderRq(1, "ABC", 200, LocalDateTime.now(), Side.SELL, 400, 590, broker1.getBrokerId(), shareholder.getShareholderId(), 0, 0, 0));
 
-        verify(eventPublisher).publish(new OrderRejectedEvent(1, 200, List.of(Message.SELLER_HAS_NOT_ENOUGH_POSITIONS)));
+        verify(eventPublisher).publishAll(containing(new OrderRejectedEvent(1, 200, List.of(Message.SELLER_HAS_NOT_ENOUGH_POSITIONS))));
     }
 
     @Test
@@ -488,7 +509,7 @@ public class OrderHandlerTest {
 
         orderHandler.handleEnterOrder(EnterOrderRq.createUpdateOrderRq(1, "ABC", 6, LocalDateTime.now(), Side.SELL, 450, 580, broker1.getBrokerId(), shareholder.getShareholderId(), 0, 0, 0));
 
-        verify(eventPublisher).publish(new OrderRejectedEvent(1, 6, List.of(Message.SELLER_HAS_NOT_ENOUGH_POSITIONS)));
+        verify(eventPublisher).publishAll(containing(new OrderRejectedEvent(1, 6, List.of(Message.SELLER_HAS_NOT_ENOUGH_POSITIONS))));
     }
 
     @Test
@@ -509,7 +530,7 @@ public class OrderHandlerTest {
 
         orderHandler.handleEnterOrder(EnterOrderRq.createUpdateOrderRq(1, "ABC", 6, LocalDateTime.now(), Side.SELL, 250, 570, broker1.getBrokerId(), shareholder.getShareholderId(), 0, 0, 0));
 
-        verify(eventPublisher).publish(any(OrderExecutedEvent.class));
+        verify(eventPublisher).publishAll(containing(OrderExecutedEvent.class));
         assertThat(shareholder1.hasEnoughPositionsOn(security, 100_000 + 250)).isTrue();
         assertThat(shareholder.hasEnoughPositionsOn(security, 99_500 - 251)).isFalse();
     }
@@ -532,7 +553,7 @@ public class OrderHandlerTest {
 
         orderHandler.handleEnterOrder(EnterOrderRq.createNewOrderRq(1, "ABC", 200, LocalDateTime.now(), Side.BUY, 500, 570, broker3.getBrokerId(), shareholder.getShareholderId(), 0, 0, 0));
 
-        verify(eventPublisher).publish(any(OrderAcceptedEvent.class));
+        verify(eventPublisher).publishAll(containing(OrderAcceptedEvent.class));
         assertThat(shareholder1.hasEnoughPositionsOn(security, 100_000)).isTrue();
         assertThat(shareholder.hasEnoughPositionsOn(security, 500)).isTrue();
     }
@@ -555,9 +576,36 @@ public class OrderHandlerTest {
 
         orderHandler.handleEnterOrder(EnterOrderRq.createNewOrderRq(1, "ABC", 3, LocalDateTime.now(), Side.BUY, 500, 545, broker3.getBrokerId(), shareholder1.getShareholderId(), 0, 0, 0));
 
-        verify(eventPublisher).publish(any(OrderAcceptedEvent.class));
+        verify(eventPublisher).publishAll(containing(OrderAcceptedEvent.class));
         assertThat(shareholder1.hasEnoughPositionsOn(security, 100_000)).isTrue();
         assertThat(shareholder.hasEnoughPositionsOn(security, 500)).isTrue();
     }
 
+    @Test
+    void batch_groups_requests_by_security_and_publishes_their_events_together() {
+        Security other = securityRepository.addSecurity(Security.builder().isin("XYZ"));
+        shareholder.incPosition(other, 1_000);
+
+        orderHandler.handleBatch(List.of(
+                EnterOrderRq.createNewOrderRq(1, "ABC", 300, LocalDateTime.now(), Side.SELL, 100, 15500, 1, shareholder.getShareholderId(), 0, 0, 0),
+                EnterOrderRq.createNewOrderRq(2, "XYZ", 400, LocalDateTime.now(), Side.SELL, 100, 15500, 1, shareholder.getShareholderId(), 0, 0, 0),
+                new DeleteOrderRq(3, "ABC", Side.SELL, 300),
+                new DeleteOrderRq(4, "XYZ", Side.SELL, 999)
+        ));
+
+        verify(eventPublisher).publishAll(List.of(
+                new OrderAcceptedEvent(1, 300),
+                new OrderDeletedEvent(3, 300),
+                new OrderAcceptedEvent(2, 400),
+                new OrderRejectedEvent(4, 999, List.of(Message.ORDER_ID_NOT_FOUND))
+        ));
+        verify(eventPublisher, never()).publish(any());
+        assertThat(security.getOrderBook().hasOrderOfType(Side.SELL)).isFalse();
+        assertThat(other.getOrderBook().findByOrderId(Side.SELL, 400)).isNotNull();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ArgumentCaptor<List<Event>> eventsCaptor() {
+        return ArgumentCaptor.forClass(List.class);
+    }
 }
@@ -0,0 +1,144 @@
+package ir.ramtung.tinyme.domain;
+
+import ir.ramtung.tinyme.domain.entity.*;
+import ir.ramtung.tinyme.domain.service.Matcher;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PriceLevelOrderBookTest {
+    private Security security;
+    private Broker broker;
+    private Shareholder shareholder;
+    private List<Order> orders;
+    private final Matcher matcher = new Matcher();
+
+    @BeforeEach
+    void setupOrderBook() {
+        security = Security.builder().index(0).orderBook(new PriceLevelOrderBook()).build();
+        broker = Broker.builder().credit(100_000_000L).build();
+        shareholder = Shareholder.builder().build();
+        shareholder.incPosition(security, 100_000);
+        orders = Arrays.asList(
+                new Order(1, security, Side.BUY, 304, 15700, broker, shareholder, 0),
+                new Order(2, security, Side.BUY, 43, 15500, broker, shareholder, 0),
+                new Order(3, security, Side.BUY, 445, 15450, broker, shareholder, 0),
+                new Order(4, security, Side.BUY, 526, 15450, broker, shareholder, 0),
+                new Order(5, security, Side.BUY, 1000, 15400, broker, shareholder, 0),
+                new Order(6, security, Side.SELL, 350, 15800, broker, shareholder, 0),
+                new Order(7, security, Side.SELL, 285, 15810, broker, shareholder, 0),
+                new Order(8, security, Side.SELL, 800, 15810, broker, shareholder, 0),
+                new Order(9, security, Side.SELL, 340, 15820, broker, shareholder, 0),
+                new Order(10, security, Side.SELL, 65, 15820, broker, shareholder, 0)
+        );
+        List.of(orders.get(4), orders.get(2), orders.get(0), orders.get(3), orders.get(1),
+                orders.get(8), orders.get(5), orders.get(6), orders.get(9), orders.get(7))
+                .forEach(order -> security.getOrderBook().enqueue(order));
+    }
+
+    @Test
+    void keeps_price_time_priority_regardless_of_insertion_order() {
+        assertThat(security.getOrderBook().getBuyQueue()).isEqualTo(orders.subList(0, 5));
+        assertThat(security.getOrderBook().getSellQueue()).isEqualTo(orders.subList(5, 10));
+    }
+
+    @Test
+    void finds_orders_by_id_only_in_their_own_side() {
+        assertThat(security.getOrderBook().findByOrderId(Side.BUY, 4)).isEqualTo(orders.get(3));
+        assertThat(security.getOrderBook().findByOrderId(Side.SELL, 4)).isNull();
+    }
+
+    @Test
+    void removes_an_order_and_drops_its_empty_level() {
+        OrderBook orderBook = security.getOrderBook();
+        assertThat(orderBook.removeByOrderId(Side.BUY, 2)).isTrue();
+        assertThat(orderBook.removeByOrderId(Side.BUY, 2)).isFalse();
+        assertThat(orderBook.getBuyQueue()).containsExactly(orders.get(0), orders.get(2), orders.get(3), orders.get(4));
+    }
+
+    @Test
+    void put_back_order_goes_to_the_front_of_its_level() {
+        OrderBook orderBook = security.getOrderBook();
+        orderBook.removeByOrderId(Side.SELL, 8);
+        orderBook.putBack(orders.get(7));
+        assertThat(orderBook.getSellQueue()).containsExactly(orders.get(5), orders.get(7), orders.get(6), orders.get(8), orders.get(9));
+    }
+
+    @Test
+    void matching_sweeps_levels_in_priority_order() {
+        Order order = new Order(11, security, Side.SELL, 800, 15450, broker, shareholder, 0);
+        MatchResult result = matcher.match(order);
+        assertThat(result.trades()).extracting(trade -> trade.getBuy().getOrderId()).containsExactly(1L, 2L, 3L, 4L);
+        assertThat(result.remainder().getQuantity()).isEqualTo(0);
+        assertThat(security.getOrderBook().getBuyQueue().getFirst().getOrderId()).isEqualTo(4);
+        assertThat(security.getOrderBook().getBuyQueue().getFirst().getQuantity()).isEqualTo(518);
+    }
+
+    @Test
+    void replenished_iceberg_goes_to_the_back_of_its_level() {
+        OrderBook orderBook = security.getOrderBook();
+        for (long orderId = 1; orderId <= 5; orderId++)
+            orderBook.removeByOrderId(Side.BUY, orderId);
+        IcebergOrder iceberg = new IcebergOrder(12, security, Side.BUY, 450, 15400, broker, shareholder, 200, 0);
+        orderBook.enqueue(iceberg);
+        orderBook.enqueue(orders.get(4));
+
+        matcher.match(new Order(13, security, Side.SELL, 300, 15400, broker, shareholder, 0));
+
+        assertThat(orderBook.getBuyQueue()).extracting(Order::getOrderId).containsExactly(5L, 12L);
+        assertThat(orderBook.getBuyQueue().getFirst().getQuantity()).isEqualTo(900);
+        assertThat(iceberg.getQuantity()).isEqualTo(200);
+        assertThat(iceberg.getTotalQuantity()).isEqualTo(250);
+    }
+
+    @Test
+    void plan_follows_iceberg_replenishment_without_touching_the_book() {
+        OrderBook orderBook = security.getOrderBook();
+        orderBook.enqueue(new IcebergOrder(11, security, Side.SELL, 450, 15800, broker, shareholder, 100, 0));
+        Order order = new Order(12, security, Side.BUY, 700, 15800, broker, shareholder, 0);
+
+        MatchPlan plan = matcher.plan(order);
+
+        assertThat(plan).isEqualTo(new MatchPlan(MatchingOutcome.EXECUTED, 5, 700, 700L * 15800, 0, 0));
+        assertThat(orderBook.getSellQueue()).extracting(Order::getOrderId).containsExactly(6L, 11L, 7L, 8L, 9L, 10L);
+        assertThat(broker.getCredit()).isEqualTo(100_000_000L);
+        assertThat(matcher.execute(order).trades()).extracting(Trade::getQuantity).containsExactly(350, 100, 100, 100, 50);
+    }
+
+    @Test
+    void order_id_index_follows_matching_and_rollback() {
+        OrderBook orderBook = security.getOrderBook();
+        Broker poorBroker = Broker.builder().credit(6_000_000L).build();
+        Order order = new Order(11, security, Side.BUY, 700, 15810, poorBroker, shareholder, 0);
+
+        MatchResult result = matcher.match(order);
+
+        assertThat(result.outcome()).isEqualTo(MatchingOutcome.NOT_ENOUGH_CREDIT);
+        assertThat(orderBook.findByOrderId(Side.SELL, 6).getQuantity()).isEqualTo(350);
+        assertThat(orderBook.findByOrderId(Side.SELL, 7).getQuantity()).isEqualTo(285);
+        assertThat(orderBook.getSellQueue()).extracting(Order::getOrderId).containsExactly(6L, 7L, 8L, 9L, 10L);
+        assertThat(orderBook.removeByOrderId(Side.SELL, 6)).isTrue();
+        assertThat(orderBook.findByOrderId(Side.SELL, 6)).isNull();
+    }
+
+    @Test
+    void order_id_index_survives_growth_and_interleaved_removals() {
+        OrderBook orderBook = new PriceLevelOrderBook();
+        for (long orderId = 100; orderId < 1100; orderId++)
+            orderBook.enqueue(new Order(orderId, security, Side.BUY, 10, 15000 + (int) (orderId % 7), broker, shareholder, 0));
+        for (long orderId = 100; orderId < 1100; orderId += 3)
+            assertThat(orderBook.removeByOrderId(Side.BUY, orderId)).isTrue();
+        for (long orderId = 100; orderId < 1100; orderId++) {
+            Order found = orderBook.findByOrderId(Side.BUY, orderId);
+            if ((orderId - 100) % 3 == 0)
+                assertThat(found).isNull();
+            else
+                assertThat(found.getOrderId()).isEqualTo(orderId);
+        }
+        assertThat(orderBook.getBuyQueue()).hasSize(666);
+    }
+}
@@ -0,0 +1,20 @@
+package ir.ramtung.tinyme.domain;
+
+import ir.ramtung.tinyme.messaging.event.Event;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.argThat;
+
+final class PublishedEvents {
+    private PublishedEvents() {
+    }
+
+    static List<? extends Event> containing(Event... expected) {
+        return argThat(events -> events.containsAll(List.of(expected)));
+    }
+
+    static List<? extends Event> containing(Class<? extends Event> eventType) {
+        return argThat(events -> events.stream().anyMatch(eventType::isInstance));
+    }
+}
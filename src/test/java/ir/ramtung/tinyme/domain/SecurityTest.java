@@ -15,10 +15,15 @@ import org.springframework.context.annotation.Import;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static ir.ramtung.tinyme.domain.entity.Side.BUY;
 import static ir.ramtung.tinyme.domain.entity.Side.SELL;
 import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.spy;
 
 @SpringBootTest
 @Import(MockedJMSTestConfig.class)
@@ -32,7 +37,7 @@ class SecurityTest {
 
     @BeforeEach
     void setupOrderBook() {
-        security = Security.builder().build();
+        security = Security.builder().index(0).build();
         broker = Broker.builder().brokerId(0).credit(1_000_000L).build();
         shareholder = Shareholder.builder().shareholderId(0).build();
         shareholder.incPosition(security, 100_000);
@@ -51,6 +56,54 @@ class SecurityTest {
         orders.forEach(order -> security.getOrderBook().enqueue(order));
     }
 
+    @Test
+    void simulating_an_order_reports_fills_without_changing_anything() throws InvalidRequestException {
+        Broker buyer = Broker.builder().brokerId(1).credit(100_000_000L).build();
+        EnterOrderRq enterOrderRq = EnterOrderRq.createNewOrderRq(1, security.getIsin(), 11, LocalDateTime.now(), BUY, 700, 15810, 1, 0, 0, 0, 0);
+
+        MatchPlan plan = security.simulateOrder(enterOrderRq, buyer, shareholder, matcher);
+
+        assertThat(plan).isEqualTo(new MatchPlan(MatchingOutcome.EXECUTED, 3, 700, 11_063_500, 0, -11_063_500));
+        assertThat(plan.averagePrice()).isEqualTo(15805);
+        assertThat(buyer.getCredit()).isEqualTo(100_000_000L);
+        assertThat(security.getOrderBook().getSellQueue()).extracting(Order::getQuantity).containsExactly(350, 285, 800, 340, 65);
+    }
+
+    @Test
+    void simulating_an_order_waits_for_an_update_in_progress() throws InterruptedException {
+        Broker buyer = Broker.builder().brokerId(1).credit(100_000_000L).build();
+        EnterOrderRq enterOrderRq = EnterOrderRq.createNewOrderRq(1, security.getIsin(), 11, LocalDateTime.now(), BUY, 700, 15810, 1, 0, 0, 0, 0);
+        AtomicReference<MatchPlan> plan = new AtomicReference<>();
+        long stamp = security.beginUpdate();
+        Thread simulation = new Thread(() -> {
+            try {
+                plan.set(security.simulateOrder(enterOrderRq, buyer, shareholder, matcher));
+            } catch (InvalidRequestException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        simulation.start();
+        simulation.join(50);
+        assertThat(plan.get()).isNull();
+
+        security.getOrderBook().removeFirst(SELL);
+        security.endUpdate(stamp);
+        simulation.join();
+        assertThat(plan.get().fillCount()).isEqualTo(2);
+        assertThat(plan.get().tradedValue()).isEqualTo(700L * 15810);
+    }
+
+    @Test
+    void simulating_an_order_checks_minimum_execution_quantity() throws InvalidRequestException {
+        Broker buyer = Broker.builder().brokerId(1).credit(100_000_000L).build();
+        EnterOrderRq enterOrderRq = EnterOrderRq.createNewOrderRq(1, security.getIsin(), 11, LocalDateTime.now(), BUY, 3000, 15810, 1, 0, 0, 2000, 0);
+
+        MatchPlan plan = security.simulateOrder(enterOrderRq, buyer, shareholder, matcher);
+
+        assertThat(plan.outcome()).isEqualTo(MatchingOutcome.NOT_ENOUGH_INITIAL_TRANSACTION);
+        assertThat(security.getOrderBook().getSellQueue()).hasSize(5);
+    }
+
     @Test
     void reducing_quantity_does_not_change_priority() {
         EnterOrderRq updateOrderRq = EnterOrderRq.createUpdateOrderRq(1, security.getIsin(), 3, LocalDateTime.now(), BUY, 440, 15450, 0, 0, 0, 0, 0);
@@ -107,7 +160,7 @@ class SecurityTest {
 
     @Test
     void increasing_iceberg_peak_size_changes_priority() {
-        security = Security.builder().build();
+        security = Security.builder().index(0).build();
         broker = Broker.builder().credit(1_000_000L).build();
         orders = Arrays.asList(
                 new Order(1, security, BUY, 304, 15700, broker, shareholder, 0),
@@ -125,7 +178,7 @@ class SecurityTest {
 
     @Test
     void decreasing_iceberg_quantity_to_amount_larger_than_peak_size_does_not_changes_priority() {
-        security = Security.builder().build();
+        security = Security.builder().index(0).build();
         broker = Broker.builder().build();
         orders = Arrays.asList(
                 new Order(1, security, BUY, 304, 15700, broker, shareholder, 0),
@@ -142,7 +195,7 @@ class SecurityTest {
 
     @Test
     void update_iceberg_that_loses_priority_with_no_trade_works() {
-        security = Security.builder().isin("TEST").build();
+        security = Security.builder().index(0).isin("TEST").build();
         broker = Broker.builder().brokerId(1).credit(100).build();
 
         security.getOrderBook().enqueue(
@@ -158,7 +211,7 @@ class SecurityTest {
 
     @Test
     void update_iceberg_order_decrease_peak_size() {
-        security = Security.builder().isin("TEST").build();
+        security = Security.builder().index(0).isin("TEST").build();
         security.getOrderBook().enqueue(
                 new IcebergOrder(1, security, BUY, 20, 10, broker, shareholder, 10, 0)
         );
@@ -171,7 +224,7 @@ class SecurityTest {
 
     @Test
     void update_iceberg_order_price_leads_to_match_as_new_order() throws InvalidRequestException {
-        security = Security.builder().isin("TEST").build();
+        security = Security.builder().index(0).isin("TEST").build();
         shareholder.incPosition(security, 1_000);
         orders = List.of(
                 new Order(1, security, BUY, 15, 10, broker, shareholder, 0),
@@ -191,4 +244,19 @@ class SecurityTest {
     }
 
 
-}
\ No newline at end of file
+
+    @Test
+    void failed_reexecution_of_an_update_restores_the_original_order() throws InvalidRequestException {
+        Matcher racingMatcher = spy(matcher);
+        doReturn(MatchResult.notEnoughCredit()).when(racingMatcher).execute(any(Order.class), anyLong());
+        EnterOrderRq updateOrderRq = EnterOrderRq.createUpdateOrderRq(1, security.getIsin(), 3, LocalDateTime.now(), BUY, 445, 15600, 0, 0, 0, 0, 0);
+
+        MatchResult result = security.updateOrder(updateOrderRq, racingMatcher);
+
+        assertThat(result.outcome()).isEqualTo(MatchingOutcome.NOT_ENOUGH_CREDIT);
+        Order restored = security.getOrderBook().findByOrderId(BUY, 3);
+        assertThat(restored.getPrice()).isEqualTo(15450);
+        assertThat(restored.getQuantity()).isEqualTo(445);
+        assertThat(broker.getCredit()).isEqualTo(1_000_000L);
+    }
+}
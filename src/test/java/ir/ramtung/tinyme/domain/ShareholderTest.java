@@ -0,0 +1,52 @@
+package ir.ramtung.tinyme.domain;
+
+import ir.ramtung.tinyme.domain.entity.Security;
+import ir.ramtung.tinyme.domain.entity.Shareholder;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+class ShareholderTest {
+    @Test
+    void keeps_positions_per_security_while_growing() {
+        Shareholder shareholder = Shareholder.builder().build();
+        List<Security> securities = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            Security security = Security.builder().index(i).isin("S" + i).build();
+            securities.add(security);
+            shareholder.incPosition(security, i);
+        }
+        for (int i = 0; i < 1_000; i++)
+            assertThat(shareholder.getPosition(securities.get(i))).isEqualTo(i);
+        Map<Integer, Integer> visited = new HashMap<>();
+        shareholder.forEachPosition(visited::put);
+        assertThat(visited).hasSize(1_000).containsEntry(securities.get(7).getIndex(), 7);
+    }
+
+    @Test
+    void decreasing_below_zero_fails_and_keeps_the_position() {
+        Shareholder shareholder = Shareholder.builder().build();
+        Security security = Security.builder().index(0).isin("ABC").build();
+        shareholder.incPosition(security, 10);
+        assertThatIllegalArgumentException().isThrownBy(() -> shareholder.decPosition(security, 11));
+        shareholder.decPosition(security, 4);
+        assertThat(shareholder.hasEnoughPositionsOn(security, 6)).isTrue();
+        assertThat(shareholder.hasEnoughPositionsOn(security, 7)).isFalse();
+        assertThat(shareholder.hasEnoughPositionsOn(Security.builder().index(1).build(), 1)).isFalse();
+    }
+
+    @Test
+    void positions_need_a_security_with_an_index() {
+        Shareholder shareholder = Shareholder.builder().build();
+        Security security = Security.builder().isin("ABC").build();
+        assertThat(security.getIndex()).isEqualTo(-1);
+        assertThatIllegalArgumentException().isThrownBy(() -> shareholder.incPosition(security, 10));
+        assertThatIllegalArgumentException().isThrownBy(() -> shareholder.hasEnoughPositionsOn(security, 1));
+    }
+}
@@ -18,18 +18,24 @@ import ir.ramtung.tinyme.repository.SecurityRepository;
 import ir.ramtung.tinyme.repository.ShareholderRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.annotation.Import;
 import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import static ir.ramtung.tinyme.domain.PublishedEvents.containing;
 import static ir.ramtung.tinyme.domain.entity.Side.BUY;
 import static ir.ramtung.tinyme.domain.entity.Side.SELL;
 import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 
 @SpringBootTest
@@ -55,14 +61,14 @@ public class StopLimitTest {
 
     @BeforeEach
     void setup() {
-        security = Security.builder().isin("ABC").lastTransactionPrice(5).build();
+        securityRepository.clear();
+        security = securityRepository.addSecurity(Security.builder().isin("ABC").lastTransactionPrice(5));
         broker = Broker.builder().brokerId(1).credit(1_000_000L).build();
         shareholder = Shareholder.builder().shareholderId(0).build();
         shareholder.incPosition(security, 100_000_000);
 
         brokerRepository.addBroker(broker);
         shareholderRepository.addShareholder(shareholder);
-        securityRepository.addSecurity(security);
     }
 
     @Test
@@ -314,7 +320,7 @@ public class StopLimitTest {
 
         orderHandler.handleEnterOrder(stopLimitOrderRq);
 
-        verify(eventPublisher).publish(new OrderActivatedEvent(2, 1));
+        verify(eventPublisher).publishAll(containing(new OrderActivatedEvent(2, 1)));
     }
 
     @Test
@@ -329,7 +335,7 @@ public class StopLimitTest {
 
         orderHandler.handleEnterOrder(ChangingStopLimitnewOrderRq);
 
-        verify(eventPublisher).publish(new OrderActivatedEvent(2, 55));
+        verify(eventPublisher).publishAll(containing(new OrderActivatedEvent(2, 55)));
     }
 
     @Test
@@ -350,7 +356,73 @@ public class StopLimitTest {
         Trade trade = new Trade(security, sellOrder.getPrice(), sellOrder.getQuantity(),
                 buyStopLimitOrder, sellOrder);
 
-        verify(eventPublisher).publish(new OrderExecutedEvent(1, 55, List.of(new TradeDTO(trade))));
+        verify(eventPublisher).publishAll(containing(new OrderActivatedEvent(1, 55), new OrderExecutedEvent(1, 55, List.of(new TradeDTO(trade)))));
+    }
+
+    @Test
+    void cascade_budget_keeps_remaining_activated_orders_in_the_inactive_book() {
+        security.getInactiveOrderBook().enqueue(new StopLimitOrder(55, security, BUY, 3, 5, broker, shareholder, 0, 6, 1));
+        security.getInactiveOrderBook().enqueue(new StopLimitOrder(56, security, BUY, 3, 5, broker, shareholder, 0, 7, 2));
+        security.getOrderBook().enqueue(new Order(3, security, SELL, 3, 10, broker, shareholder, 0));
+
+        security.checkExecutableOrders(matcher.execute(new Order(4, security, BUY, 3, 10, broker, shareholder, 0)));
+        security.runExecutableOrders(matcher, 1, (order, result) -> {});
+
+        assertThat(security.hasExecutableOrders()).isTrue();
+        assertThat(security.getOrderBook().getBuyQueue()).extracting(Order::getOrderId).containsExactly(55L);
+        assertThat(security.getInactiveOrderBook().getBuyQueue()).extracting(Order::getOrderId).containsExactly(56L);
+        assertThat(security.snapshot().inactiveBuyOrders()).extracting(Order::getOrderId).containsExactly(56L);
+        security.runExecutableOrders(matcher, 1, (order, result) -> {});
+        assertThat(security.hasExecutableOrders()).isFalse();
+        assertThat(security.getOrderBook().getBuyQueue()).extracting(Order::getOrderId).containsExactly(55L, 56L);
+        assertThat(security.getInactiveOrderBook().getBuyQueue()).isEmpty();
+    }
+
+    @Test
+    void cascade_beyond_the_budget_is_published_as_a_follow_up_of_its_own() {
+        security.getInactiveOrderBook().enqueue(new StopLimitOrder(55, security, BUY, 3, 5, broker, shareholder, 0, 6, 1));
+        security.getInactiveOrderBook().enqueue(new StopLimitOrder(56, security, BUY, 3, 5, broker, shareholder, 0, 7, 2));
+        security.getOrderBook().enqueue(new Order(3, security, SELL, 3, 10, broker, shareholder, 0));
+        EventPublisher mockEventPublisher = mock(EventPublisher.class);
+        OrderHandler myOrderHandler = new OrderHandler(securityRepository, brokerRepository, shareholderRepository, mockEventPublisher, new Matcher());
+        ReflectionTestUtils.setField(myOrderHandler, "stopCascadeBudget", 1);
+
+        myOrderHandler.handleEnterOrder(EnterOrderRq.createNewOrderRq(4, "ABC", 4, LocalDateTime.now(), BUY, 3, 10, 1, shareholder.getShareholderId(), 0, 0, 0));
+
+        InOrder inOrder = inOrder(mockEventPublisher);
+        inOrder.verify(mockEventPublisher).publishAll(containing(new OrderAcceptedEvent(4, 4), new OrderActivatedEvent(1, 55)));
+        inOrder.verify(mockEventPublisher).publishAll(List.of(new OrderActivatedEvent(2, 56)));
+        assertThat(security.hasExecutableOrders()).isFalse();
+    }
+
+    @Test
+    void pending_activated_orders_stay_out_of_an_unrelated_requests_events() {
+        security.getInactiveOrderBook().enqueue(new StopLimitOrder(55, security, BUY, 3, 5, broker, shareholder, 0, 6, 1));
+        security.getOrderBook().enqueue(new Order(3, security, SELL, 3, 10, broker, shareholder, 0));
+        security.checkExecutableOrders(matcher.execute(new Order(4, security, BUY, 3, 10, broker, shareholder, 0)));
+        EventPublisher mockEventPublisher = mock(EventPublisher.class);
+        OrderHandler myOrderHandler = new OrderHandler(securityRepository, brokerRepository, shareholderRepository, mockEventPublisher, new Matcher());
+
+        myOrderHandler.handleEnterOrder(EnterOrderRq.createNewOrderRq(6, "ABC", 6, LocalDateTime.now(), SELL, 3, 100, 1, shareholder.getShareholderId(), 0, 0, 0));
+
+        verify(mockEventPublisher).publishAll(List.of(new OrderAcceptedEvent(6, 6)));
+        assertThat(security.hasExecutableOrders()).isTrue();
+        assertThat(security.getInactiveOrderBook().findByOrderId(BUY, 55)).isNotNull();
+    }
+
+    @Test
+    void deleting_a_pending_activated_order_keeps_it_from_running() {
+        security.getInactiveOrderBook().enqueue(new StopLimitOrder(55, security, BUY, 3, 5, broker, shareholder, 0, 6, 1));
+        security.getInactiveOrderBook().enqueue(new StopLimitOrder(56, security, BUY, 3, 5, broker, shareholder, 0, 7, 2));
+        security.getOrderBook().enqueue(new Order(3, security, SELL, 3, 10, broker, shareholder, 0));
+        security.checkExecutableOrders(matcher.execute(new Order(4, security, BUY, 3, 10, broker, shareholder, 0)));
+
+        assertThatNoException().isThrownBy(() -> security.deleteOrder(new DeleteOrderRq(5, security.getIsin(), BUY, 56)));
+        List<Long> executed = new ArrayList<>();
+        security.runExecutableOrders(matcher, 10, (order, result) -> executed.add(order.getOrderId()));
+
+        assertThat(executed).containsExactly(55L);
+        assertThat(security.getOrderBook().getBuyQueue()).extracting(Order::getOrderId).containsExactly(55L);
     }
 
     @Test
@@ -391,7 +463,7 @@ public class StopLimitTest {
         EnterOrderRq updateOrderRq = EnterOrderRq.createUpdateOrderRq(3, security.getIsin(), 1, LocalDateTime.now(), BUY, 3, 7, 1, shareholder.getShareholderId(), 0, 0, 3);
         orderHandler.handleEnterOrder(updateOrderRq);
 
-        verify(eventPublisher).publish(new OrderActivatedEvent(3, 1));
+        verify(eventPublisher).publishAll(containing(new OrderActivatedEvent(3, 1)));
     }
 
     @Test
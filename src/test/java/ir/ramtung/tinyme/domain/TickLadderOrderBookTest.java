@@ -0,0 +1,108 @@
+package ir.ramtung.tinyme.domain;
+
+import ir.ramtung.tinyme.domain.entity.*;
+import ir.ramtung.tinyme.domain.service.Matcher;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TickLadderOrderBookTest {
+    private Security security;
+    private OrderBook orderBook;
+    private Broker broker;
+    private Shareholder shareholder;
+    private final Matcher matcher = new Matcher();
+
+    @BeforeEach
+    void setup() {
+        security = Security.builder().index(0).tickSize(10).orderBook(new TickLadderOrderBook(10, 8)).build();
+        orderBook = security.getOrderBook();
+        broker = Broker.builder().credit(100_000_000L).build();
+        shareholder = Shareholder.builder().build();
+        shareholder.incPosition(security, 100_000);
+    }
+
+    private Order order(long orderId, Side side, int quantity, int price) {
+        return new Order(orderId, security, side, quantity, price, broker, shareholder, 0);
+    }
+
+    @Test
+    void keeps_priority_across_the_window_and_the_overflow() {
+        orderBook.enqueue(order(1, Side.BUY, 10, 1000));
+        orderBook.enqueue(order(2, Side.BUY, 10, 2000));
+        orderBook.enqueue(order(3, Side.BUY, 10, 990));
+        orderBook.enqueue(order(4, Side.BUY, 10, 500));
+        orderBook.enqueue(order(5, Side.BUY, 10, 1000));
+        assertThat(orderBook.getBuyQueue()).extracting(Order::getOrderId).containsExactly(2L, 1L, 5L, 3L, 4L);
+    }
+
+    @Test
+    void moves_the_best_price_when_the_best_level_empties() {
+        orderBook.enqueue(order(1, Side.SELL, 10, 1000));
+        orderBook.enqueue(order(2, Side.SELL, 10, 1020));
+        orderBook.enqueue(order(3, Side.SELL, 10, 1010));
+        orderBook.removeFirst(Side.SELL);
+        assertThat(orderBook.matchWithFirst(order(4, Side.BUY, 10, 1030)).getOrderId()).isEqualTo(3);
+        orderBook.removeByOrderId(Side.SELL, 3);
+        assertThat(orderBook.matchWithFirst(order(4, Side.BUY, 10, 1030)).getOrderId()).isEqualTo(2);
+        orderBook.removeByOrderId(Side.SELL, 2);
+        assertThat(orderBook.hasOrderOfType(Side.SELL)).isFalse();
+    }
+
+    @Test
+    void recenters_when_the_window_is_empty() {
+        orderBook.enqueue(order(1, Side.BUY, 10, 1000));
+        orderBook.enqueue(order(2, Side.BUY, 10, 5000));
+        orderBook.removeByOrderId(Side.BUY, 1);
+        orderBook.enqueue(order(3, Side.BUY, 10, 6000));
+        orderBook.enqueue(order(4, Side.BUY, 10, 5010));
+        orderBook.enqueue(order(5, Side.BUY, 10, 5000));
+        assertThat(orderBook.getBuyQueue()).extracting(Order::getOrderId).containsExactly(3L, 4L, 2L, 5L);
+    }
+
+    @Test
+    void matching_sweeps_the_window_and_the_overflow() {
+        orderBook.enqueue(order(1, Side.SELL, 10, 1000));
+        orderBook.enqueue(order(2, Side.SELL, 10, 1500));
+        orderBook.enqueue(order(3, Side.SELL, 10, 1010));
+        orderBook.enqueue(order(4, Side.SELL, 10, 900));
+
+        MatchResult result = matcher.match(order(5, Side.BUY, 35, 1500));
+
+        assertThat(result.trades()).extracting(trade -> trade.getSell().getOrderId()).containsExactly(4L, 1L, 3L, 2L);
+        assertThat(orderBook.getSellQueue()).extracting(Order::getQuantity).containsExactly(5);
+        assertThat(orderBook.totalSellQuantityByShareholder(shareholder)).isEqualTo(5);
+    }
+
+    @Test
+    void plan_sweeps_the_window_and_the_overflow() {
+        orderBook.enqueue(order(1, Side.SELL, 10, 1000));
+        orderBook.enqueue(order(2, Side.SELL, 10, 1500));
+        orderBook.enqueue(order(3, Side.SELL, 10, 1010));
+        orderBook.enqueue(order(4, Side.SELL, 10, 900));
+        Broker poorBroker = Broker.builder().credit(30_000).build();
+
+        assertThat(matcher.plan(order(5, Side.BUY, 35, 1500)))
+                .isEqualTo(new MatchPlan(MatchingOutcome.EXECUTED, 4, 35, 36600, 0, 0));
+        MatchResult result = matcher.execute(new Order(6, security, Side.BUY, 35, 1500, poorBroker, shareholder, 0));
+
+        assertThat(result.outcome()).isEqualTo(MatchingOutcome.NOT_ENOUGH_CREDIT);
+        assertThat(orderBook.getSellQueue()).extracting(Order::getOrderId).containsExactly(4L, 1L, 3L, 2L);
+        assertThat(poorBroker.getCredit()).isEqualTo(30_000);
+    }
+
+    @Test
+    void replenished_iceberg_moves_to_the_back_of_its_level() {
+        orderBook.enqueue(new IcebergOrder(1, security, Side.SELL, 50, 1000, broker, shareholder, 20, 0));
+        orderBook.enqueue(order(2, Side.SELL, 10, 1000));
+        orderBook.enqueue(order(3, Side.SELL, 10, 1010));
+
+        matcher.match(order(4, Side.BUY, 20, 1000));
+
+        assertThat(orderBook.getSellQueue()).extracting(Order::getOrderId).containsExactly(2L, 1L, 3L);
+        assertThat(orderBook.getSellQueue()).extracting(Order::getQuantity).containsExactly(10, 20, 10);
+        assertThat(security.getDepth(1).sellLevels()).containsExactly(new DepthLevel(1000, 30, 2));
+        assertThat(orderBook.totalSellQuantityByShareholder(shareholder)).isEqualTo(50);
+    }
+}
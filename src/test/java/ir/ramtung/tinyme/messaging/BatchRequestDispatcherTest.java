@@ -0,0 +1,124 @@
+package ir.ramtung.tinyme.messaging;
+
+import ir.ramtung.tinyme.domain.entity.Side;
+import ir.ramtung.tinyme.domain.service.MatchingShards;
+import ir.ramtung.tinyme.domain.service.OrderHandler;
+import ir.ramtung.tinyme.domain.service.RequestContext;
+import ir.ramtung.tinyme.messaging.request.DeleteOrderRq;
+import ir.ramtung.tinyme.messaging.request.EnterOrderRq;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.support.converter.MessageConversionException;
+import org.springframework.jms.support.converter.MessageConverter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatNoException;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class BatchRequestDispatcherTest {
+    private MessageConverter converter;
+    private OrderHandler orderHandler;
+    private JmsTemplate jmsTemplate;
+
+    @BeforeEach
+    void setup() {
+        converter = mock(MessageConverter.class);
+        orderHandler = mock(OrderHandler.class);
+        jmsTemplate = mock(JmsTemplate.class);
+        when(jmsTemplate.getMessageConverter()).thenReturn(converter);
+        when(orderHandler.resolve(any())).thenAnswer(invocation -> {
+            Object request = invocation.getArgument(0);
+            String isin = request instanceof EnterOrderRq enterOrderRq ? enterOrderRq.getSecurityIsin() : ((DeleteOrderRq) request).getSecurityIsin();
+            return new RequestContext(isin.equals("ABC") ? 0 : 1, -1, -1);
+        });
+    }
+
+    private Message message(Object request) throws JMSException {
+        Message message = mock(Message.class);
+        when(message.getStringProperty("_type")).thenReturn(request.getClass().getName());
+        when(converter.fromMessage(message)).thenReturn(request);
+        return message;
+    }
+
+    @Test
+    void a_batch_is_dispatched_by_type_into_one_handler_call() throws JMSException {
+        BatchRequestDispatcher dispatcher = new BatchRequestDispatcher(jmsTemplate, orderHandler, new MatchingShards(0), "RQ", 64, 100);
+        EnterOrderRq enterOrderRq = EnterOrderRq.createNewOrderRq(1, "ABC", 1, LocalDateTime.now(), Side.BUY, 10, 100, 1, 1, 0, 0, 0);
+        DeleteOrderRq deleteOrderRq = new DeleteOrderRq(2, "XYZ", Side.SELL, 3);
+        Message unknown = mock(Message.class);
+        when(unknown.getStringProperty("_type")).thenReturn("Unknown");
+
+        dispatcher.dispatch(List.of(message(enterOrderRq), unknown, message(deleteOrderRq)));
+
+        verify(orderHandler).handleBatch(eq(List.of(enterOrderRq, deleteOrderRq)), any());
+        verify(converter, never()).fromMessage(unknown);
+    }
+
+    @Test
+    void a_batch_is_split_per_security_when_sharded() throws JMSException, InterruptedException {
+        MatchingShards matchingShards = new MatchingShards(2);
+        BatchRequestDispatcher dispatcher = new BatchRequestDispatcher(jmsTemplate, orderHandler, matchingShards, "RQ", 64, 100);
+        DeleteOrderRq first = new DeleteOrderRq(1, "ABC", Side.BUY, 1);
+        DeleteOrderRq second = new DeleteOrderRq(2, "XYZ", Side.BUY, 2);
+        DeleteOrderRq third = new DeleteOrderRq(3, "ABC", Side.BUY, 3);
+
+        dispatcher.dispatch(List.of(message(first), message(second), message(third)));
+        matchingShards.shutdown();
+
+        verify(orderHandler).handleBatch(eq(List.of(first, third)), any());
+        verify(orderHandler).handleBatch(eq(List.of(second)), any());
+        verify(orderHandler, times(2)).handleBatch(any(), any());
+    }
+
+    @Test
+    void a_message_that_cannot_be_converted_is_dropped_on_its_own() throws JMSException {
+        BatchRequestDispatcher dispatcher = new BatchRequestDispatcher(jmsTemplate, orderHandler, new MatchingShards(0), "RQ", 64, 100);
+        DeleteOrderRq first = new DeleteOrderRq(1, "ABC", Side.BUY, 1);
+        DeleteOrderRq third = new DeleteOrderRq(3, "ABC", Side.BUY, 3);
+        Message poison = mock(Message.class);
+        when(poison.getStringProperty("_type")).thenReturn(DeleteOrderRq.class.getName());
+        when(converter.fromMessage(poison)).thenThrow(new MessageConversionException("corrupt body"));
+
+        dispatcher.dispatch(List.of(message(first), poison, message(third)));
+
+        verify(orderHandler).handleBatch(eq(List.of(first, third)), any());
+    }
+
+    @Test
+    void a_failure_after_handling_started_does_not_escape_the_dispatch() throws JMSException {
+        BatchRequestDispatcher dispatcher = new BatchRequestDispatcher(jmsTemplate, orderHandler, new MatchingShards(0), "RQ", 64, 100);
+        DeleteOrderRq request = new DeleteOrderRq(1, "ABC", Side.BUY, 1);
+        doThrow(new IllegalStateException("publishing failed")).when(orderHandler).handleBatch(any(), any());
+
+        assertThatNoException().isThrownBy(() -> dispatcher.dispatch(List.of(message(request))));
+    }
+
+    @Test
+    void a_sharded_dispatch_returns_only_after_every_shard_handled_its_part() throws JMSException, InterruptedException {
+        MatchingShards matchingShards = new MatchingShards(2);
+        BatchRequestDispatcher dispatcher = new BatchRequestDispatcher(jmsTemplate, orderHandler, matchingShards, "RQ", 64, 100);
+        List<Object> handled = Collections.synchronizedList(new ArrayList<>());
+        doAnswer(invocation -> {
+            Thread.sleep(50);
+            handled.addAll(invocation.getArgument(0));
+            return null;
+        }).when(orderHandler).handleBatch(any(), any());
+        DeleteOrderRq first = new DeleteOrderRq(1, "ABC", Side.BUY, 1);
+        DeleteOrderRq second = new DeleteOrderRq(2, "XYZ", Side.BUY, 2);
+
+        dispatcher.dispatch(List.of(message(first), message(second)));
+
+        assertThat(handled).containsExactlyInAnyOrder(first, second);
+        matchingShards.shutdown();
+    }
+}
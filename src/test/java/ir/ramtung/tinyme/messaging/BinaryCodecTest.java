@@ -0,0 +1,63 @@
+package ir.ramtung.tinyme.messaging;
+
+import ir.ramtung.tinyme.domain.entity.Side;
+import ir.ramtung.tinyme.messaging.event.*;
+import ir.ramtung.tinyme.messaging.request.DeleteOrderRq;
+import ir.ramtung.tinyme.messaging.request.EnterOrderRq;
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BinaryCodecTest {
+    private final BinaryCodec codec = new BinaryCodec();
+
+    private Object roundTrip(Object object) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        codec.encode(object, new DataOutputStream(bytes));
+        return codec.decode(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+
+    @Test
+    void requests_survive_a_round_trip() throws IOException {
+        EnterOrderRq enterOrderRq = EnterOrderRq.createUpdateOrderRq(7, "ABC", 11, LocalDateTime.of(2024, 3, 1, 9, 30, 0, 123_456_789),
+                Side.SELL, 300, 15450, 2, 3, 100, 0, 0);
+        DeleteOrderRq deleteOrderRq = new DeleteOrderRq(8, "ABC", Side.BUY, 12);
+
+        EnterOrderRq decodedEnter = (EnterOrderRq) roundTrip(enterOrderRq);
+        DeleteOrderRq decodedDelete = (DeleteOrderRq) roundTrip(deleteOrderRq);
+
+        assertThat(decodedEnter).isEqualTo(enterOrderRq);
+        assertThat(decodedDelete).isEqualTo(deleteOrderRq);
+        assertThat(decodedDelete.getSecurityIsin()).isSameAs(decodedEnter.getSecurityIsin());
+    }
+
+    @Test
+    void events_survive_a_round_trip_with_their_time() throws IOException {
+        List<Event> events = List.of(
+                new OrderAcceptedEvent(1, 2),
+                new OrderUpdatedEvent(1, 2),
+                new OrderDeletedEvent(1, 2),
+                new OrderActivatedEvent(1, 2),
+                new OrderRejectedEvent(1, 2, List.of(Message.BUYER_HAS_NOT_ENOUGH_CREDIT, "Custom reason")),
+                new OrderExecutedEvent(1, 2, List.of(new TradeDTO("ABC", 15450, 100, 2, 5), new TradeDTO("ABC", 15500, 50, 2, 6))),
+                new EventEnvelope(1, List.of(new OrderAcceptedEvent(1, 2), new OrderActivatedEvent(4, 3)))
+        );
+        for (Event event : events) {
+            Event decoded = (Event) roundTrip(event);
+            assertThat(decoded).isEqualTo(event);
+            assertThat(decoded.getTime()).isEqualTo(event.getTime());
+        }
+    }
+
+    @Test
+    void reject_reasons_travel_as_numeric_codes() throws IOException {
+        ByteArrayOutputStream coded = new ByteArrayOutputStream();
+        codec.encode(new OrderRejectedEvent(1, 2, List.of(Message.CANNOT_SPECIFY_MINIMUM_EXECUTION_QUANTITY_FOR_A_STOP_LIMIT_ORDER)), new DataOutputStream(coded));
+        assertThat(coded.size()).isEqualTo(1 + 12 + 8 + 8 + 2 + 2);
+        assertThat(MessageCodes.messageOf(MessageCodes.codeOf(Message.UNKNOWN_BROKER_ID))).isSameAs(Message.UNKNOWN_BROKER_ID);
+    }
+}
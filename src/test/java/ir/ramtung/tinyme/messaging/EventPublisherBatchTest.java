@@ -0,0 +1,85 @@
+package ir.ramtung.tinyme.messaging;
+
+import ir.ramtung.tinyme.messaging.event.OrderAcceptedEvent;
+import ir.ramtung.tinyme.pipeline.OverflowPolicy;
+import ir.ramtung.tinyme.pipeline.WaitStrategy;
+import jakarta.jms.Connection;
+import jakarta.jms.ConnectionFactory;
+import jakarta.jms.JMSException;
+import jakarta.jms.MessageProducer;
+import jakarta.jms.Queue;
+import jakarta.jms.Session;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.support.converter.MessageConversionException;
+import org.springframework.jms.support.converter.MessageConverter;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class EventPublisherBatchTest {
+    private ConnectionFactory connectionFactory;
+    private Connection connection;
+    private MessageProducer producer;
+    private MessageConverter converter;
+
+    @BeforeEach
+    void setup() throws JMSException {
+        connectionFactory = mock(ConnectionFactory.class);
+        connection = mock(Connection.class);
+        Session session = mock(Session.class);
+        producer = mock(MessageProducer.class);
+        converter = mock(MessageConverter.class);
+        when(connectionFactory.createConnection()).thenReturn(connection);
+        when(connection.createSession(anyBoolean(), anyInt())).thenReturn(session);
+        when(session.createQueue(any())).thenReturn(mock(Queue.class));
+        when(session.createProducer(any())).thenReturn(producer);
+        when(converter.toMessage(any(), any())).thenAnswer(invocation -> mock(jakarta.jms.Message.class));
+    }
+
+    private EventPublisher publisher(int sendAttempts) {
+        JmsTemplate jmsTemplate = new JmsTemplate(connectionFactory);
+        jmsTemplate.setMessageConverter(converter);
+        EventPublisher publisher = new EventPublisher(jmsTemplate, 8, 64, 0, OverflowPolicy.BLOCK, sendAttempts, WaitStrategy.SLEEPING);
+        ReflectionTestUtils.setField(publisher, "responseQueue", "RS");
+        return publisher;
+    }
+
+    @Test
+    void a_response_that_cannot_be_converted_is_dropped_without_a_retry() throws Exception {
+        OrderAcceptedEvent corrupt = new OrderAcceptedEvent(2, 2);
+        when(converter.toMessage(eq(corrupt), any())).thenThrow(new MessageConversionException("cannot convert"));
+        EventPublisher publisher = publisher(10);
+
+        publisher.publishAll(List.of(new OrderAcceptedEvent(1, 1), corrupt, new OrderAcceptedEvent(3, 3)));
+        publisher.shutdown();
+
+        verify(producer, times(2)).send(any());
+        verify(connectionFactory, times(1)).createConnection();
+    }
+
+    @Test
+    void a_connection_failure_is_retried_a_bounded_number_of_times() throws Exception {
+        when(connectionFactory.createConnection())
+                .thenThrow(new JMSException("connection lost"))
+                .thenThrow(new JMSException("connection lost"))
+                .thenThrow(new JMSException("connection lost"))
+                .thenReturn(connection);
+        EventPublisher publisher = publisher(3);
+
+        publisher.publishAll(List.of(new OrderAcceptedEvent(1, 1)));
+        verify(connectionFactory, timeout(1000).times(3)).createConnection();
+        publisher.publishAll(List.of(new OrderAcceptedEvent(2, 2)));
+        publisher.shutdown();
+
+        verify(connectionFactory, times(4)).createConnection();
+        verify(producer, times(1)).send(any());
+    }
+}
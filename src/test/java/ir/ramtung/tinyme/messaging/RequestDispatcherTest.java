@@ -3,6 +3,7 @@ package ir.ramtung.tinyme.messaging;
 import ir.ramtung.tinyme.domain.entity.Side;
 import ir.ramtung.tinyme.messaging.request.EnterOrderRq;
 import ir.ramtung.tinyme.domain.service.OrderHandler;
+import ir.ramtung.tinyme.domain.service.RequestContext;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
@@ -17,6 +18,7 @@ import java.time.LocalDateTime;
 
 import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 //@Disabled
 @SpringBootTest
@@ -41,7 +43,9 @@ public class RequestDispatcherTest {
     @Test
     void request_channel_integration_works() {
         EnterOrderRq rq = EnterOrderRq.createNewOrderRq(1, "ABC", 200, LocalDateTime.now(), Side.SELL, 300, 15450, 0, 0, 0, 0, 0);
+        RequestContext context = new RequestContext(0, 0, 0);
+        when(mockOrderHandler.resolve(rq)).thenReturn(context);
         jmsTemplate.convertAndSend(requestQueue, rq);
-        verify(mockOrderHandler, timeout(1000)).handleEnterOrder(rq);
+        verify(mockOrderHandler, timeout(1000)).handleEnterOrder(rq, context);
     }
 }
@@ -0,0 +1,55 @@
+package ir.ramtung.tinyme.messaging;
+
+import ir.ramtung.tinyme.domain.entity.Side;
+import ir.ramtung.tinyme.domain.service.MatchingShards;
+import ir.ramtung.tinyme.domain.service.OrderHandler;
+import ir.ramtung.tinyme.domain.service.RequestContext;
+import ir.ramtung.tinyme.messaging.request.DeleteOrderRq;
+import ir.ramtung.tinyme.messaging.request.EnterOrderRq;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ShardedRequestDispatcherTest {
+    @Test
+    void a_request_is_acknowledged_only_after_its_shard_handled_it() throws InterruptedException {
+        OrderHandler orderHandler = mock(OrderHandler.class);
+        MatchingShards matchingShards = new MatchingShards(2);
+        RequestDispatcher dispatcher = new RequestDispatcher(orderHandler, matchingShards);
+        EnterOrderRq enterOrderRq = EnterOrderRq.createNewOrderRq(1, "ABC", 1, LocalDateTime.now(), Side.BUY, 10, 100, 1, 1, 0, 0, 0);
+        RequestContext context = new RequestContext(1, 0, 0);
+        when(orderHandler.resolve(enterOrderRq)).thenReturn(context);
+        List<Object> handled = Collections.synchronizedList(new ArrayList<>());
+        doAnswer(invocation -> {
+            Thread.sleep(50);
+            handled.add(invocation.getArgument(0));
+            return null;
+        }).when(orderHandler).handleEnterOrder(any(), any());
+
+        dispatcher.receiveEnterOrderRq(enterOrderRq);
+
+        assertThat(handled).containsExactly(enterOrderRq);
+        matchingShards.shutdown();
+    }
+
+    @Test
+    void a_request_the_shards_no_longer_accept_is_not_acknowledged() throws InterruptedException {
+        OrderHandler orderHandler = mock(OrderHandler.class);
+        MatchingShards matchingShards = new MatchingShards(2);
+        RequestDispatcher dispatcher = new RequestDispatcher(orderHandler, matchingShards);
+        DeleteOrderRq deleteOrderRq = new DeleteOrderRq(1, "ABC", Side.BUY, 1);
+        when(orderHandler.resolve(deleteOrderRq)).thenReturn(new RequestContext(0, -1, -1));
+        matchingShards.shutdown();
+
+        assertThatIllegalStateException().isThrownBy(() -> dispatcher.receiveDeleteOrderRq(deleteOrderRq));
+        verify(orderHandler, never()).handleDeleteOrder(any(), any());
+    }
+}
@@ -0,0 +1,76 @@
+package ir.ramtung.tinyme.pipeline;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+
+class PipelineStageTest {
+    @Test
+    void await_handled_waits_for_everything_accepted_before_it() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> handled = Collections.synchronizedList(new ArrayList<>());
+        PipelineStage<Integer> stage = new PipelineStage<>("test-stage", 4, WaitStrategy.SLEEPING, item -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            handled.add(item);
+        });
+        for (int i = 0; i < 4; i++)
+            assertThat(stage.offer(i)).isTrue();
+
+        Thread waiter = new Thread(stage::awaitHandled);
+        waiter.start();
+        waiter.join(50);
+        assertThat(waiter.isAlive()).isTrue();
+
+        release.countDown();
+        waiter.join();
+        assertThat(handled).containsExactly(0, 1, 2, 3);
+        stage.shutdown();
+    }
+
+    @Test
+    void accepted_items_are_handled_even_when_shutdown_races_with_producers() throws InterruptedException {
+        AtomicInteger handled = new AtomicInteger();
+        AtomicInteger accepted = new AtomicInteger();
+        PipelineStage<Integer> stage = new PipelineStage<>("test-stage", 8, WaitStrategy.YIELDING, item -> handled.incrementAndGet());
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < 4; p++) {
+            Thread producer = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++)
+                    if (stage.trySubmit(i))
+                        accepted.incrementAndGet();
+            });
+            producers.add(producer);
+            producer.start();
+        }
+        stage.shutdown();
+        for (Thread producer : producers)
+            producer.join();
+
+        assertThat(handled.get()).isEqualTo(accepted.get());
+        assertThat(stage.offer(1)).isFalse();
+        assertThat(stage.trySubmit(1)).isFalse();
+        assertThatIllegalStateException().isThrownBy(() -> stage.submit(1));
+    }
+
+    @Test
+    void a_failing_batch_still_counts_as_handled() throws InterruptedException {
+        PipelineStage<Integer> stage = new PipelineStage<>("test-stage", 4, WaitStrategy.SLEEPING, item -> {
+            throw new IllegalStateException("handler failure");
+        });
+        stage.submit(1);
+        stage.awaitHandled();
+        assertThat(stage.getQueueDepth()).isZero();
+        stage.shutdown();
+    }
+}
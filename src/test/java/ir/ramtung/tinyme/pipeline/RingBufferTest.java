@@ -0,0 +1,73 @@
+package ir.ramtung.tinyme.pipeline;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RingBufferTest {
+    @Test
+    void capacity_is_rounded_up_to_a_power_of_two_and_offers_fail_when_full() {
+        RingBuffer<Integer> ring = new RingBuffer<>(3);
+        assertThat(ring.capacity()).isEqualTo(4);
+        for (int i = 0; i < 4; i++)
+            assertThat(ring.offer(i)).isTrue();
+        assertThat(ring.offer(4)).isFalse();
+        assertThat(ring.size()).isEqualTo(4);
+
+        assertThat(ring.poll()).isEqualTo(0);
+        assertThat(ring.offer(4)).isTrue();
+        List<Integer> drained = new ArrayList<>();
+        for (Integer item = ring.poll(); item != null; item = ring.poll())
+            drained.add(item);
+        assertThat(drained).containsExactly(1, 2, 3, 4);
+        assertThat(ring.size()).isZero();
+    }
+
+    @Test
+    void stage_delivers_every_item_in_per_producer_order() throws InterruptedException {
+        int producers = 4;
+        int itemsPerProducer = 10_000;
+        List<int[]> received = new ArrayList<>();
+        PipelineStage<int[]> stage = new PipelineStage<>("test-stage", 64, WaitStrategy.YIELDING, received::add);
+        CountDownLatch done = new CountDownLatch(producers);
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            new Thread(() -> {
+                for (int i = 0; i < itemsPerProducer; i++)
+                    stage.submit(new int[]{producer, i});
+                done.countDown();
+            }).start();
+        }
+        done.await();
+        stage.shutdown();
+
+        assertThat(received).hasSize(producers * itemsPerProducer);
+        int[] next = new int[producers];
+        for (int[] item : received)
+            assertThat(item[1]).isEqualTo(next[item[0]]++);
+        assertThat(stage.getQueueDepth()).isZero();
+    }
+
+    @Test
+    void stage_groups_items_into_batches_and_flushes_the_rest_on_shutdown() throws InterruptedException {
+        List<Integer> batchSizes = new ArrayList<>();
+        List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+        PipelineStage<Integer> stage = new PipelineStage<>("batch-stage", 64, WaitStrategy.SLEEPING, 4, 5_000_000_000L, batch -> {
+            batchSizes.add(batch.size());
+            received.addAll(batch);
+        });
+        for (int i = 0; i < 10; i++)
+            stage.submit(i);
+        while (received.size() < 8)
+            Thread.onSpinWait();
+        stage.shutdown();
+
+        assertThat(batchSizes).containsExactly(4, 4, 2);
+        assertThat(received).containsExactly(0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+    }
+}
@@ -0,0 +1,61 @@
+package ir.ramtung.tinyme.repository;
+
+import ir.ramtung.tinyme.domain.entity.Broker;
+import ir.ramtung.tinyme.domain.entity.Security;
+import ir.ramtung.tinyme.domain.entity.Shareholder;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RepositoryTest {
+    @Test
+    void adding_a_broker_with_a_known_id_replaces_it() {
+        BrokerRepository repository = new BrokerRepository();
+        for (long brokerId = 1000; brokerId < 1100; brokerId++)
+            repository.addBroker(Broker.builder().brokerId(brokerId).build());
+        Broker replacement = Broker.builder().brokerId(1042).credit(5).build();
+        repository.addBroker(replacement);
+
+        assertThat(repository.findBrokerById(1042)).isSameAs(replacement);
+        assertThat(repository.indexOf(1042)).isEqualTo(42);
+        assertThat(repository.findBrokerByIndex(42)).isSameAs(replacement);
+        assertThat(repository.findBrokerById(7)).isNull();
+        assertThat(repository.indexOf(7)).isEqualTo(-1);
+        assertThat(repository.findBrokerByIndex(-1)).isNull();
+        assertThat(repository.allBrokers()).hasSize(100);
+
+        repository.clear();
+        assertThat(repository.findBrokerById(1042)).isNull();
+    }
+
+    @Test
+    void securities_get_consecutive_indices_from_the_repository() {
+        SecurityRepository repository = new SecurityRepository();
+        Security first = repository.addSecurity(Security.builder().isin("ABC"));
+        Security second = repository.addSecurity(Security.builder().isin("XYZ"));
+        assertThat(first.getIndex()).isEqualTo(0);
+        assertThat(second.getIndex()).isEqualTo(1);
+        assertThat(repository.findSecurityByIsin("ABC")).isSameAs(first);
+        assertThat(repository.findSecurityByIndex(1)).isSameAs(second);
+        assertThat(repository.findSecurityByIsin("DEF")).isNull();
+        assertThat(repository.indexOf("XYZ")).isEqualTo(1);
+        assertThat(repository.indexOf("DEF")).isEqualTo(-1);
+
+        repository.clear();
+        assertThat(repository.addSecurity(Security.builder().isin("DEF")).getIndex()).isEqualTo(0);
+    }
+
+    @Test
+    void shareholders_get_dense_indices_in_load_order() {
+        ShareholderRepository repository = new ShareholderRepository();
+        Shareholder first = Shareholder.builder().shareholderId(900_000).build();
+        Shareholder second = Shareholder.builder().shareholderId(17).build();
+        repository.addShareholder(first);
+        repository.addShareholder(second);
+
+        assertThat(repository.indexOf(900_000)).isEqualTo(0);
+        assertThat(repository.indexOf(17)).isEqualTo(1);
+        assertThat(repository.findShareholderByIndex(1)).isSameAs(second);
+        assertThat(repository.allShareholders()).extracting(Shareholder::getShareholderId).containsExactly(900_000L, 17L);
+    }
+}